@@ -1,14 +1,48 @@
 package game;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
-import java.io.IOException;
-
+/**
+ * A 3x3x3 board packed into a single long, in the same layout the
+ * expand_and_classify kernel uses: X stones in bits 0-26, O stones in bits 27-53.
+ * Playing and undoing moves only flips bits; the 27-char string form is built
+ * lazily for the UI and the neural network.
+ * <p>
+ * Completed lines are counted incrementally from {@link WinLines#LINES_THROUGH}
+ * as moves are played and undone, so {@link #checkWin()} is a few compares.
+ */
 public class Board {
-    public String board;
+    public static final int CELLS = 27;
+    public static final int O_SHIFT = 27;
+    public static final long CELL_MASK = (1L << CELLS) - 1;
+
+    private long bits;
+    private final byte[] moves = new byte[CELLS];
+    private int moveCount;
+    private int xLines;
+    private int oLines;
+    private String view;
 
     public Board() {
-        board = newEmptyBoard();
+        this(0L);
+    }
+
+    /**
+     * @param bits a packed board in kernel format (X in bits 0-26, O in bits 27-53)
+     */
+    public Board(long bits) {
+        long x = bits & CELL_MASK;
+        long o = (bits >>> O_SHIFT) & CELL_MASK;
+        if ((x & o) != 0)
+            throw new IllegalArgumentException("A tile cannot hold both players.");
+
+        this.bits = x | (o << O_SHIFT);
+        this.xLines = WinLines.completed(x);
+        this.oLines = WinLines.completed(o);
+        // Replay occupied cells in index order so undo() can take them back.
+        long occupied = x | o;
+        while (occupied != 0) {
+            moves[moveCount++] = (byte) Long.numberOfTrailingZeros(occupied);
+            occupied &= occupied - 1;
+        }
     }
 
     public static int toIndex(int x, int y, int z) {
@@ -36,6 +70,11 @@ public class Board {
     }
 
     public static class Result {
+        public static final Result IN_PROGRESS = new Result(false, Player.NONE);
+        public static final Result X_WINS = new Result(true, Player.X);
+        public static final Result O_WINS = new Result(true, Player.O);
+        public static final Result DRAW = new Result(true, Player.NONE);
+
         public final boolean gameOver;
         public final Player winner;
 
@@ -46,19 +85,100 @@ public class Board {
     }
 
     public void play(int x, int y, int z, Player player) {
+        play(toIndex(x, y, z), player);
+    }
+
+    public void play(int index, Player player) {
         if (player == Player.NONE)
             throw new IllegalArgumentException("There has to be a selected player to play on a tile.");
 
-        board = setTile(x, y, z, player.toChar());
+        long cell = 1L << index;
+        if (((bits | (bits >>> O_SHIFT)) & cell) != 0)
+            throw new IllegalArgumentException("Cannot play on an already occupied tile.");
+
+        if (player == Player.X) {
+            bits |= cell;
+            xLines += WinLines.completedThrough(index, getXBits());
+        } else {
+            bits |= cell << O_SHIFT;
+            oLines += WinLines.completedThrough(index, getOBits());
+        }
+        moves[moveCount++] = (byte) index;
+        view = null;
     }
 
-    private String setTile(int x, int y, int z, char player) {
-        int index = toIndex(x, y, z);
-        char tile = board.charAt(index);
-        if (tile != ' ') throw new IllegalArgumentException("Cannot play on an already occupied tile.");
-        StringBuilder sb = new StringBuilder(board);
-        sb.setCharAt(index, player);
-        return sb.toString();
+    /**
+     * Takes back the most recent move.
+     *
+     * @return the index of the cell that was cleared
+     */
+    public int undo() {
+        if (moveCount == 0)
+            throw new IllegalStateException("There is no move to undo.");
+
+        int index = moves[--moveCount];
+        long cell = 1L << index;
+        if ((bits & cell) != 0) {
+            xLines -= WinLines.completedThrough(index, getXBits());
+        } else {
+            oLines -= WinLines.completedThrough(index, getOBits());
+        }
+        bits &= ~(cell | (cell << O_SHIFT));
+        view = null;
+        return index;
+    }
+
+    public Player getTile(int index) {
+        long cell = 1L << index;
+        if ((bits & cell) != 0) return Player.X;
+        if ((bits & (cell << O_SHIFT)) != 0) return Player.O;
+        return Player.NONE;
+    }
+
+    /** The packed board, directly usable as a kernel input. */
+    public long getBits() {
+        return bits;
+    }
+
+    public long getXBits() {
+        return bits & CELL_MASK;
+    }
+
+    public long getOBits() {
+        return bits >>> O_SHIFT;
+    }
+
+    public long getEmptyCells() {
+        return ~(getXBits() | getOBits()) & CELL_MASK;
+    }
+
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    /** @return the index of the most recent move, or -1 on an empty board */
+    public int getLastMove() {
+        return moveCount == 0 ? -1 : moves[moveCount - 1];
+    }
+
+    /** Player to move, assuming X always starts. */
+    public Player getSideToMove() {
+        return (moveCount & 1) == 0 ? Player.X : Player.O;
+    }
+
+    /**
+     * 27-char view of the board (' ', 'x' or 'o' per cell), rebuilt only after
+     * the position has changed.
+     */
+    public String board() {
+        if (view == null) {
+            char[] chars = new char[CELLS];
+            for (int i = 0; i < CELLS; i++) {
+                chars[i] = getTile(i).toChar();
+            }
+            view = new String(chars);
+        }
+        return view;
     }
 
     public static String newEmptyBoard() {
@@ -73,51 +193,14 @@ public class Board {
         return sb.toString();
     }
 
+    /**
+     * A player wins by completing two lines. Only the mover's lines can change
+     * on a move, and the counts are kept up to date by play() and undo().
+     */
     public Result checkWin() {
-        int xWinCount = 0;
-        int oWinCount = 0;
-
-        try (BufferedReader br = new BufferedReader(new FileReader("src/main/data/winLines.txt"))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                String[] tokens = line.trim().split("\\s+");
-                if (tokens.length != 3) continue; // Skip malformed lines.
-                try {
-                    int i1 = Integer.parseInt(tokens[0]);
-                    int i2 = Integer.parseInt(tokens[1]);
-                    int i3 = Integer.parseInt(tokens[2]);
-
-                    char c1 = board.charAt(i1);
-                    char c2 = board.charAt(i2);
-                    char c3 = board.charAt(i3);
-
-                    if (c1 != ' ' && c1 == c2 && c2 == c3) {
-                        if (Character.toLowerCase(c1) == 'x') {
-                            xWinCount++;
-                        } else if (Character.toLowerCase(c1) == 'o') {
-                            oWinCount++;
-                        }
-                    }
-                } catch (NumberFormatException | IndexOutOfBoundsException e) {
-                    continue; // Skip lines that can't be parsed correctly.
-                }
-
-                if (xWinCount >= 2) return new Result(true, Player.X);
-                if (oWinCount >= 2) return new Result(true, Player.O);
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-
-        boolean boardFull = true;
-        for (int i = 0; i < board.length(); i++) {
-            if (board.charAt(i) == ' ') {
-                boardFull = false;
-                break;
-            }
-        }
-        if (boardFull) return new Result(true, Player.NONE);
-
-        return new Result(false, Player.NONE);
+        if (xLines >= 2) return Result.X_WINS;
+        if (oLines >= 2) return Result.O_WINS;
+        if (moveCount == CELLS) return Result.DRAW;
+        return Result.IN_PROGRESS;
     }
 }
@@ -0,0 +1,194 @@
+package game;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Maps packed boards to a canonical representative under the 48 symmetries of
+ * the cube.
+ * <p>
+ * The 24 cell maps from rotationMaps.txt (written by
+ * {@code precomputing.GenerateRotationMaps}) are closed under composition, which
+ * adds the missing reflections and yields the full 48-element group. Each
+ * transform is then compiled into one 512-entry lookup table per 9-cell layer,
+ * so a board is permuted with six table lookups instead of 54 single-bit moves.
+ * The canonical form is the numerically smallest image of the board.
+ */
+public final class Canonicalizer {
+    public static final String PATH = "src/main/data/rotationMaps.txt";
+
+    public static final int GROUP_SIZE = 48;
+    /** Bits above the 54 board bits where a transform index or class size can be packed. */
+    public static final int TAG_SHIFT = 58;
+    public static final long BOARD_MASK = (1L << (2 * Board.CELLS)) - 1;
+
+    private static final int LAYER_CELLS = 9;
+    public static final int LAYER_PATTERNS = 1 << LAYER_CELLS;
+    private static final int TABLE_STRIDE = 3 * LAYER_PATTERNS;
+
+    /** MAPS[t][cell] is the cell that {@code cell} moves to under transform t; MAPS[0] is the identity. */
+    private static final int[][] MAPS;
+    private static final int[] INVERSE;
+    private static final int[] LAYER_TABLES;
+
+    static {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(Paths.get(PATH), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read rotation maps from " + PATH, e);
+        }
+
+        List<int[]> group = new ArrayList<>();
+        int[] identity = new int[Board.CELLS];
+        for (int i = 0; i < identity.length; i++) identity[i] = i;
+        group.add(identity);
+        for (String line : lines) {
+            String[] tokens = line.trim().split("\\s+");
+            if (tokens.length != Board.CELLS) continue; // Skip malformed lines.
+            int[] map = new int[Board.CELLS];
+            for (int i = 0; i < map.length; i++) map[i] = Integer.parseInt(tokens[i]);
+            addIfNew(group, map);
+        }
+
+        // Close under composition to pick up whichever half of the group the file lacks.
+        for (int i = 0; i < group.size(); i++) {
+            for (int j = 0; j <= i; j++) {
+                addIfNew(group, compose(group.get(i), group.get(j)));
+                addIfNew(group, compose(group.get(j), group.get(i)));
+            }
+        }
+        if (group.size() != GROUP_SIZE)
+            throw new IllegalStateException("Expected " + GROUP_SIZE + " symmetries but found " + group.size());
+
+        MAPS = group.toArray(new int[0][]);
+        INVERSE = new int[GROUP_SIZE];
+        for (int t = 0; t < GROUP_SIZE; t++) {
+            for (int u = 0; u < GROUP_SIZE; u++) {
+                if (Arrays.equals(compose(MAPS[t], MAPS[u]), identity)) INVERSE[t] = u;
+            }
+        }
+
+        LAYER_TABLES = new int[GROUP_SIZE * TABLE_STRIDE];
+        for (int t = 0; t < GROUP_SIZE; t++) {
+            for (int layer = 0; layer < 3; layer++) {
+                int base = t * TABLE_STRIDE + layer * LAYER_PATTERNS;
+                for (int pattern = 0; pattern < LAYER_PATTERNS; pattern++) {
+                    int image = 0;
+                    for (int bit = 0; bit < LAYER_CELLS; bit++) {
+                        if ((pattern & (1 << bit)) != 0) {
+                            image |= 1 << MAPS[t][layer * LAYER_CELLS + bit];
+                        }
+                    }
+                    LAYER_TABLES[base + pattern] = image;
+                }
+            }
+        }
+    }
+
+    private Canonicalizer() {
+    }
+
+    /** Image of a packed board under transform {@code t}. */
+    public static long apply(int t, long board) {
+        int base = t * TABLE_STRIDE;
+        return permute(base, board & Board.CELL_MASK)
+                | (permute(base, (board >>> Board.O_SHIFT) & Board.CELL_MASK) << Board.O_SHIFT);
+    }
+
+    private static long permute(int base, long cells) {
+        return LAYER_TABLES[base + (int) (cells & 511)]
+                | LAYER_TABLES[base + LAYER_PATTERNS + (int) ((cells >>> 9) & 511)]
+                | LAYER_TABLES[base + 2 * LAYER_PATTERNS + (int) (cells >>> 18)];
+    }
+
+    /** The smallest image of {@code board} over the whole group. */
+    public static long canonical(long board) {
+        board &= BOARD_MASK;
+        long best = board;
+        for (int t = 1; t < GROUP_SIZE; t++) {
+            long image = apply(t, board);
+            if (image < best) best = image;
+        }
+        return best;
+    }
+
+    /**
+     * Canonical board with the index of a transform producing it packed above
+     * the board bits: {@code canonical | t << TAG_SHIFT}.
+     * Use {@link #board(long)} and {@link #transform(long)} to unpack.
+     */
+    public static long canonicalWithTransform(long board) {
+        board &= BOARD_MASK;
+        long best = board;
+        int bestT = 0;
+        for (int t = 1; t < GROUP_SIZE; t++) {
+            long image = apply(t, board);
+            if (image < best) {
+                best = image;
+                bestT = t;
+            }
+        }
+        return best | ((long) bestT << TAG_SHIFT);
+    }
+
+    public static long board(long packed) {
+        return packed & BOARD_MASK;
+    }
+
+    public static int transform(long packed) {
+        return (int) (packed >>> TAG_SHIFT);
+    }
+
+    /** Number of distinct boards in the symmetry class of {@code board} (a divisor of 48). */
+    public static int classSize(long board) {
+        board &= BOARD_MASK;
+        int stabilizer = 1;
+        for (int t = 1; t < GROUP_SIZE; t++) {
+            if (apply(t, board) == board) stabilizer++;
+        }
+        return GROUP_SIZE / stabilizer;
+    }
+
+    /** Cell that {@code cell} moves to under transform {@code t}. */
+    public static int mapCell(int t, int cell) {
+        return MAPS[t][cell];
+    }
+
+    public static int inverse(int t) {
+        return INVERSE[t];
+    }
+
+    /** Copy of the cell map of transform {@code t}, e.g. for injecting into kernel source. */
+    public static int[] cellMap(int t) {
+        return MAPS[t].clone();
+    }
+
+    /**
+     * Copy of the per-layer lookup tables, e.g. for uploading to a kernel. Entry
+     * {@code (t * 3 + layer) * LAYER_PATTERNS + pattern} is the image under
+     * transform t of the cells of that layer set in pattern.
+     */
+    public static int[] layerTables() {
+        return LAYER_TABLES.clone();
+    }
+
+    private static int[] compose(int[] first, int[] then) {
+        int[] out = new int[first.length];
+        for (int i = 0; i < out.length; i++) out[i] = then[first[i]];
+        return out;
+    }
+
+    private static void addIfNew(List<int[]> group, int[] map) {
+        for (int[] m : group) {
+            if (Arrays.equals(m, map)) return;
+        }
+        group.add(map);
+    }
+}
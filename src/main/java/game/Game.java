@@ -27,6 +27,7 @@ public class Game extends JFrame {
         currentPlayer = playerX;
 
         initUI();
+        updateEvaluation();
         updateTurnControls();  // decide if we auto‐step or wait for Next Move
     }
 
@@ -67,6 +68,7 @@ public class Game extends JFrame {
         if (wasFirst) firstMoveDone = true;
 
         boardPanel.repaint();
+        updateEvaluation();
         var result = board.checkWin();
         if (result.gameOver) {
             String msg = result.winner == Board.Player.NONE
@@ -77,6 +79,7 @@ public class Game extends JFrame {
             // reset everything
             board         = new Board();
             boardPanel.repaint();
+            updateEvaluation();
             currentPlayer = playerX;
             firstMoveDone = false;
             optionsPanel.updateCurrentMoveLabel();
@@ -90,6 +93,25 @@ public class Game extends JFrame {
         updateTurnControls();
     }
 
+    /**
+     * Shows the solved value of the position on the eval bar (+27 X wins,
+     * -27 O wins, 0 draw) when the tablebase holds it, and the neutral 0
+     * otherwise, so the bar never keeps the value of an earlier position.
+     */
+    private void updateEvaluation() {
+        Tablebase tablebase = Tablebase.getDefault();
+        int entry = tablebase == null ? -1 : tablebase.probe(board.getBits());
+        if (entry < 0) {
+            evalPanel.setEvaluation(0);
+            return;
+        }
+        switch (Tablebase.outcome(entry)) {
+            case Tablebase.X_WINS: evalPanel.setEvaluation(27);  break;
+            case Tablebase.O_WINS: evalPanel.setEvaluation(-27); break;
+            default:               evalPanel.setEvaluation(0);
+        }
+    }
+
     /** Invoked by the Next Move button. */
     public void stepAIMove() {
         currentPlayer.makeMove(this);
@@ -1,6 +1,81 @@
 package game;
 
+import java.util.Arrays;
+
+/**
+ * Negamax search with alpha-beta pruning and iterative deepening over the packed
+ * board (X in bits 0-26, O in bits 27-53). A player wins by completing two lines,
+ * exactly as in {@link Board#checkWin()} and the expand_and_classify kernel.
+ * <p>
+ * Scores are from the side to move: a win found {@code n} plies from the root is
+ * worth {@code WIN_SCORE - n}, so shorter wins and longer losses are preferred.
+ * <p>
+ * Results are cached in a {@link TranspositionTable}. Move order does not matter
+ * in this game, so the same set of stones is reached along many paths and most
+ * of them end in a table hit. Several Minimax instances may share one table.
+ */
 public class Minimax {
+    public static final int WIN_SCORE = 1000;
+    /** Scores beyond this are proven wins or losses rather than heuristic values. */
+    public static final int WIN_THRESHOLD = WIN_SCORE - 100;
+    private static final int INF = WIN_SCORE + 1;
+
+    private static final long CELL_MASK = Board.CELL_MASK;
+    private static final int TIME_CHECK_INTERVAL = 1024;
+
+    /** Cells ordered by how many lines pass through them (centre first, edges last). */
+    private static final int[] MOVE_ORDER = new int[Board.CELLS];
+
+    static {
+        Integer[] cells = new Integer[Board.CELLS];
+        for (int i = 0; i < cells.length; i++) cells[i] = i;
+        Arrays.sort(cells, (a, b) ->
+                WinLines.LINES_THROUGH[b].length - WinLines.LINES_THROUGH[a].length);
+        for (int i = 0; i < cells.length; i++) MOVE_ORDER[i] = cells[i];
+    }
+
+    public static class SearchResult {
+        public final int move;
+        public final int score;
+        public final int depth;
+        public final long nodes;
+        public final boolean solved;
+
+        public SearchResult(int move, int score, int depth, long nodes, boolean solved) {
+            this.move = move;
+            this.score = score;
+            this.depth = depth;
+            this.nodes = nodes;
+            this.solved = solved;
+        }
+    }
+
+    private final long timeBudgetMillis;
+    private final TranspositionTable table;
+    private final boolean symmetric;
+
+    private long deadline;
+    private long nodes;
+    private boolean aborted;
+
+    public Minimax(long timeBudgetMillis, TranspositionTable table) {
+        this(timeBudgetMillis, table, false);
+    }
+
+    /**
+     * @param symmetric key the table by {@link Canonicalizer#canonical} so all 48
+     *                  symmetric positions share one entry
+     */
+    public Minimax(long timeBudgetMillis, TranspositionTable table, boolean symmetric) {
+        this.timeBudgetMillis = timeBudgetMillis;
+        this.table = table;
+        this.symmetric = symmetric;
+    }
+
+    public TranspositionTable getTable() {
+        return table;
+    }
+
     public String convert(String board) {
         StringBuilder sb = new StringBuilder();
         for (int pos = 0; pos < board.length(); pos++) {
@@ -14,4 +89,236 @@ public class Minimax {
         }
         return sb.toString();
     }
+
+    /**
+     * Searches a position with iterative deepening until it is solved or the
+     * time budget runs out. The side to move is derived from the stone counts.
+     *
+     * @param board a non-terminal packed board with at least one empty cell
+     * @return the best move found by the deepest completed iteration
+     */
+    public SearchResult search(long board) {
+        long x = board & CELL_MASK;
+        long o = (board >>> Board.O_SHIFT) & CELL_MASK;
+        boolean xToMove = Long.bitCount(x) == Long.bitCount(o);
+        long me  = xToMove ? x : o;
+        long opp = xToMove ? o : x;
+        int empties = Board.CELLS - Long.bitCount(x | o);
+        if (empties == 0)
+            throw new IllegalArgumentException("There are no moves left on a full board.");
+
+        deadline = System.nanoTime() + timeBudgetMillis * 1_000_000L;
+        nodes = 0;
+        aborted = false;
+        table.newSearch();
+
+        long key = TranspositionTable.hash(board);
+        int meShift = xToMove ? 0 : Board.O_SHIFT;
+        int meLines = WinLines.completed(me);
+        int oppLines = WinLines.completed(opp);
+
+        int[] rootMoves = orderedMoves(me, opp);
+        int bestMove = rootMoves[0];
+        int bestScore = 0;
+        int completedDepth = 0;
+        boolean solved = false;
+
+        for (int depth = 1; depth <= empties; depth++) {
+            int alpha = -INF;
+            int iterBest = -1;
+            for (int move : rootMoves) {
+                int score = playAndScore(me, opp, meLines, oppLines, key, meShift,
+                        move, depth, alpha, INF, 0);
+                if (aborted) break;
+                if (score > alpha) {
+                    alpha = score;
+                    iterBest = move;
+                }
+            }
+            if (aborted) break;
+
+            bestMove = iterBest;
+            bestScore = alpha;
+            completedDepth = depth;
+            moveToFront(rootMoves, bestMove);
+
+            if (depth == empties || Math.abs(bestScore) > WIN_THRESHOLD) {
+                solved = true;
+                break;
+            }
+        }
+        return new SearchResult(bestMove, bestScore, completedDepth, nodes, solved);
+    }
+
+    /** Convenience wrapper returning only the best cell index. */
+    public int bestMove(long board) {
+        return search(board).move;
+    }
+
+    /**
+     * Plays {@code move} for the side to move and returns the resulting score
+     * from that side's point of view.
+     */
+    private int playAndScore(long me, long opp, int meLines, int oppLines, long key, int meShift,
+                             int move, int depth, int alpha, int beta, int ply) {
+        long newMe = me | (1L << move);
+        int newLines = meLines + WinLines.completedThrough(move, newMe);
+        if (newLines >= 2) return WIN_SCORE - (ply + 1);
+        if ((newMe | opp) == CELL_MASK) return 0;
+        long newKey = key ^ TranspositionTable.zobrist(move + meShift);
+        return -negamax(opp, newMe, oppLines, newLines, newKey, Board.O_SHIFT - meShift,
+                depth - 1, -beta, -alpha, ply + 1);
+    }
+
+    /**
+     * @param key     Zobrist key of the position
+     * @param meShift 0 when the side to move is X, {@link Board#O_SHIFT} when it is O
+     */
+    private int negamax(long me, long opp, int meLines, int oppLines, long key, int meShift,
+                        int depth, int alpha, int beta, int ply) {
+        if ((++nodes & (TIME_CHECK_INTERVAL - 1)) == 0 && System.nanoTime() > deadline) {
+            aborted = true;
+        }
+        if (aborted) return 0;
+
+        long empty = ~(me | opp) & CELL_MASK;
+
+        // 1) Win now if any cell completes a second line.
+        long myWins = winningCells(me, meLines, empty);
+        if (myWins != 0) return WIN_SCORE - (ply + 1);
+
+        // 2) Two separate opponent threats cannot both be blocked.
+        long oppWins = winningCells(opp, oppLines, empty);
+        if (Long.bitCount(oppWins) >= 2) return -(WIN_SCORE - (ply + 2));
+
+        if (depth <= 0) return evaluate(me, opp, meLines, oppLines);
+
+        // 3) A single threat forces the block.
+        if (oppWins != 0) {
+            int move = Long.numberOfTrailingZeros(oppWins);
+            return playAndScore(me, opp, meLines, oppLines, key, meShift, move, depth, alpha, beta, ply);
+        }
+
+        // 4) Reuse a stored result for this set of stones, or for a symmetric one.
+        long tableKey = key;
+        int toCanonical = 0;
+        if (symmetric) {
+            long board = meShift == 0 ? me | (opp << Board.O_SHIFT) : opp | (me << Board.O_SHIFT);
+            long packed = Canonicalizer.canonicalWithTransform(board);
+            tableKey = TranspositionTable.hash(Canonicalizer.board(packed));
+            toCanonical = Canonicalizer.transform(packed);
+        }
+
+        int originalAlpha = alpha;
+        int ttMove = -1;
+        long entry = table.probe(tableKey);
+        if (entry != 0) {
+            ttMove = TranspositionTable.move(entry);
+            if (ttMove >= 0) ttMove = Canonicalizer.mapCell(Canonicalizer.inverse(toCanonical), ttMove);
+            if (TranspositionTable.depth(entry) >= depth) {
+                int score = fromTable(TranspositionTable.score(entry), ply);
+                int bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.EXACT) return score;
+                if (bound == TranspositionTable.LOWER && score > alpha) alpha = score;
+                if (bound == TranspositionTable.UPPER && score < beta) beta = score;
+                if (alpha >= beta) return score;
+            }
+        }
+
+        int best = -INF;
+        int bestMove = -1;
+        if (ttMove >= 0 && (empty & (1L << ttMove)) != 0) {
+            best = playAndScore(me, opp, meLines, oppLines, key, meShift, ttMove, depth, alpha, beta, ply);
+            if (aborted) return 0;
+            bestMove = ttMove;
+            if (best > alpha) alpha = best;
+        }
+        if (alpha < beta) {
+            for (int move : MOVE_ORDER) {
+                if ((empty & (1L << move)) == 0 || move == ttMove) continue;
+                int score = playAndScore(me, opp, meLines, oppLines, key, meShift, move, depth, alpha, beta, ply);
+                if (aborted) return 0;
+                if (score > best) {
+                    best = score;
+                    bestMove = move;
+                    if (score > alpha) {
+                        alpha = score;
+                        if (alpha >= beta) break;
+                    }
+                }
+            }
+        }
+
+        int bound = best <= originalAlpha ? TranspositionTable.UPPER
+                : best >= beta ? TranspositionTable.LOWER
+                : TranspositionTable.EXACT;
+        if (bestMove >= 0) bestMove = Canonicalizer.mapCell(toCanonical, bestMove);
+        table.store(tableKey, toTable(best, ply), depth, bound, bestMove);
+        return best;
+    }
+
+    /** Win/loss scores are stored relative to the node so they stay valid at any ply. */
+    private static int toTable(int score, int ply) {
+        if (score > WIN_THRESHOLD) return score + ply;
+        if (score < -WIN_THRESHOLD) return score - ply;
+        return score;
+    }
+
+    private static int fromTable(int score, int ply) {
+        if (score > WIN_THRESHOLD) return score - ply;
+        if (score < -WIN_THRESHOLD) return score + ply;
+        return score;
+    }
+
+    /** Empty cells that would give {@code stones} its second completed line. */
+    private static long winningCells(long stones, int lines, long empty) {
+        long wins = 0L;
+        long cells = empty;
+        while (cells != 0) {
+            int c = Long.numberOfTrailingZeros(cells);
+            cells &= cells - 1;
+            if (lines + WinLines.completedThrough(c, stones | (1L << c)) >= 2) {
+                wins |= 1L << c;
+            }
+        }
+        return wins;
+    }
+
+    /**
+     * Horizon estimate: completed lines dominate, then lines still open for one
+     * side weighted by how many of its stones they already hold.
+     */
+    private static int evaluate(long me, long opp, int meLines, int oppLines) {
+        int score = 100 * (meLines - oppLines);
+        for (long m : WinLines.MASKS) {
+            long mine = me & m;
+            long theirs = opp & m;
+            if (theirs == 0 && mine != 0 && mine != m) {
+                score += Long.bitCount(mine) == 2 ? 8 : 1;
+            } else if (mine == 0 && theirs != 0 && theirs != m) {
+                score -= Long.bitCount(theirs) == 2 ? 8 : 1;
+            }
+        }
+        return score;
+    }
+
+    private static int[] orderedMoves(long me, long opp) {
+        long empty = ~(me | opp) & CELL_MASK;
+        int[] moves = new int[Long.bitCount(empty)];
+        int n = 0;
+        for (int move : MOVE_ORDER) {
+            if ((empty & (1L << move)) != 0) moves[n++] = move;
+        }
+        return moves;
+    }
+
+    private static void moveToFront(int[] moves, int move) {
+        for (int i = 0; i < moves.length; i++) {
+            if (moves[i] == move) {
+                System.arraycopy(moves, 0, moves, 1, i);
+                moves[0] = move;
+                return;
+            }
+        }
+    }
 }
@@ -0,0 +1,117 @@
+package game;
+
+/**
+ * Dense numbering of the positions at one depth through the combinatorial
+ * number system.
+ * <p>
+ * A position with {@code d} stones has {@code ceil(d/2)} X stones and
+ * {@code floor(d/2)} O stones. The X cells are ranked as a combination of the
+ * 27 cells, the O cells as a combination of the cells X leaves empty, and the
+ * two are combined as {@code rankX * C(27 - x, o) + rankO}. Ranks at depth d run
+ * from 0 to {@code count(d) - 1}, so per-depth files can be bitmaps or value
+ * arrays indexed by rank instead of sorted 54-bit keys. Both combinations use
+ * colex order: the cells {@code c1 < c2 < ... < ck} rank as
+ * {@code C(c1,1) + C(c2,2) + ... + C(ck,k)}.
+ * <p>
+ * The count includes positions no game reaches (both sides with two lines, or
+ * play continuing after a win); those ranks are simply never used.
+ */
+public final class PositionRanker {
+    /** BINOMIAL[n][k] = C(n, k) for n, k up to 27; zero when k > n. */
+    private static final long[][] BINOMIAL = new long[Board.CELLS + 1][Board.CELLS + 1];
+    private static final long[] COUNT = new long[Board.CELLS + 1];
+
+    static {
+        for (int n = 0; n <= Board.CELLS; n++) {
+            BINOMIAL[n][0] = 1;
+            for (int k = 1; k <= n; k++) BINOMIAL[n][k] = BINOMIAL[n - 1][k - 1] + BINOMIAL[n - 1][k];
+        }
+        for (int d = 0; d <= Board.CELLS; d++) {
+            int x = xStones(d);
+            COUNT[d] = BINOMIAL[Board.CELLS][x] * BINOMIAL[Board.CELLS - x][d - x];
+        }
+    }
+
+    private PositionRanker() {
+    }
+
+    /** Number of ranks at {@code depth}; the largest (depth 18) is about 2.3 * 10^11. */
+    public static long count(int depth) {
+        return COUNT[depth];
+    }
+
+    /** Stones on the board, i.e. the depth a packed board belongs to. */
+    public static int depth(long board) {
+        return Long.bitCount(board & Canonicalizer.BOARD_MASK);
+    }
+
+    /**
+     * Rank of {@code board} among the positions at its depth. Tag bits above the
+     * board are ignored.
+     *
+     * @throws IllegalArgumentException if X and O counts do not fit X moving first
+     */
+    public static long rank(long board) {
+        long x = board & Board.CELL_MASK;
+        long o = (board >>> Board.O_SHIFT) & Board.CELL_MASK;
+        int xs = Long.bitCount(x);
+        int os = Long.bitCount(o);
+        if (xs != os && xs != os + 1) {
+            throw new IllegalArgumentException("Not a position with X to start: " + xs + " X, " + os + " O");
+        }
+
+        long rankX = 0;
+        int k = 1;
+        for (long bits = x; bits != 0; bits &= bits - 1, k++) {
+            rankX += BINOMIAL[Long.numberOfTrailingZeros(bits)][k];
+        }
+
+        // O cells are renumbered over the cells X leaves empty.
+        long rankO = 0;
+        k = 1;
+        for (long bits = o; bits != 0; bits &= bits - 1, k++) {
+            int cell = Long.numberOfTrailingZeros(bits);
+            int free = cell - Long.bitCount(x & ((1L << cell) - 1));
+            rankO += BINOMIAL[free][k];
+        }
+        return rankX * BINOMIAL[Board.CELLS - xs][os] + rankO;
+    }
+
+    /** The board at {@code depth} whose {@link #rank} is {@code rank}. */
+    public static long unrank(int depth, long rank) {
+        if (depth < 0 || depth > Board.CELLS || rank < 0 || rank >= COUNT[depth]) {
+            throw new IllegalArgumentException("Rank " + rank + " out of range at depth " + depth);
+        }
+        int xs = xStones(depth);
+        int os = depth - xs;
+        long perX = BINOMIAL[Board.CELLS - xs][os];
+
+        long x = combination(rank / perX, xs, Board.CELLS);
+        long freeCombo = combination(rank % perX, os, Board.CELLS - xs);
+
+        // Spread the O combination back over the cells X leaves empty.
+        long o = 0;
+        long empty = ~x & Board.CELL_MASK;
+        for (int free = 0; empty != 0; empty &= empty - 1, free++) {
+            if ((freeCombo & (1L << free)) != 0) o |= Long.lowestOneBit(empty);
+        }
+        return x | (o << Board.O_SHIFT);
+    }
+
+    /** The k-subset of {@code 0..n-1} with colex rank {@code rank}, as a bitmask. */
+    private static long combination(long rank, int k, int n) {
+        long bits = 0;
+        int c = n - 1;
+        for (; k > 0; k--) {
+            while (BINOMIAL[c][k] > rank) c--;
+            rank -= BINOMIAL[c][k];
+            bits |= 1L << c;
+            c--;
+        }
+        return bits;
+    }
+
+    private static int xStones(int depth) {
+        return (depth + 1) / 2;
+    }
+}
@@ -0,0 +1,259 @@
+package game;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read-only perfect-play table over canonical positions, memory-mapped so that
+ * opening it costs no reading and the OS pages in only what probes touch.
+ * <p>
+ * File layout (big-endian):
+ * <pre>
+ *   0  int  MAGIC
+ *   4  int  VERSION
+ *   8  long entry count n
+ *  16  int  BLOCK_SIZE
+ *  20  int  reserved
+ *  24  long block count b
+ *  32  long[n] canonical boards, ascending
+ *      long[b] first board of every block of BLOCK_SIZE entries
+ *      byte[n] outcome bits 0-1, best move bits 2-6 on the canonical board
+ * </pre>
+ * A probe canonicalises the board, binary searches the small block index and
+ * then one block of keys, so it touches a handful of cache lines. Best moves
+ * are mapped back through the symmetry that produced the canonical board.
+ */
+public class Tablebase implements Closeable {
+    public static final String DEFAULT_PATH = "src/main/resources/MiniMax/tablebase.bin";
+
+    public static final int DRAW = 0;
+    public static final int X_WINS = 1;
+    public static final int O_WINS = 2;
+    public static final int NO_MOVE = 31;
+
+    public static final int MAGIC = 0x33445442; // "3DTB"
+    public static final int VERSION = 1;
+    public static final int BLOCK_SIZE = 64;
+    private static final int HEADER_BYTES = 32;
+
+    private static final int PAGE_SHIFT = 27; // 2^27 keys (1 GiB) per mapping
+    private static final long PAGE_MASK = (1L << PAGE_SHIFT) - 1;
+
+    private static Tablebase defaultInstance;
+    private static boolean defaultLoaded;
+
+    private final FileChannel channel;
+    private final long count;
+    private final long blocks;
+    private final LongBuffer[] keyPages;
+    private final LongBuffer index;
+    private final ByteBuffer[] valuePages;
+
+    public Tablebase(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+        if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION || header.getInt(16) != BLOCK_SIZE) {
+            channel.close();
+            throw new IOException("Not a version " + VERSION + " tablebase: " + file);
+        }
+        this.count = header.getLong(8);
+        this.blocks = header.getLong(24);
+
+        long indexOffset = HEADER_BYTES + count * Long.BYTES;
+        long valuesOffset = indexOffset + blocks * Long.BYTES;
+        if (channel.size() != valuesOffset + count) {
+            channel.close();
+            throw new IOException("Truncated tablebase: " + file);
+        }
+
+        int pages = (int) ((count + PAGE_MASK) >>> PAGE_SHIFT);
+        keyPages = new LongBuffer[pages];
+        valuePages = new ByteBuffer[pages];
+        for (int p = 0; p < pages; p++) {
+            long first = (long) p << PAGE_SHIFT;
+            long n = Math.min(count - first, 1L << PAGE_SHIFT);
+            keyPages[p] = channel.map(FileChannel.MapMode.READ_ONLY,
+                    HEADER_BYTES + first * Long.BYTES, n * Long.BYTES).asLongBuffer();
+            valuePages[p] = channel.map(FileChannel.MapMode.READ_ONLY, valuesOffset + first, n);
+        }
+        index = channel.map(FileChannel.MapMode.READ_ONLY, indexOffset, blocks * Long.BYTES).asLongBuffer();
+    }
+
+    /**
+     * The table at {@code -Dtablebase.path} (default {@link #DEFAULT_PATH}),
+     * opened on first use, or null if there is none.
+     */
+    public static synchronized Tablebase getDefault() {
+        if (!defaultLoaded) {
+            defaultLoaded = true;
+            Path file = Paths.get(System.getProperty("tablebase.path", DEFAULT_PATH));
+            if (Files.exists(file)) {
+                try {
+                    defaultInstance = new Tablebase(file);
+                } catch (IOException e) {
+                    System.err.println("Could not open tablebase " + file + ": " + e.getMessage());
+                }
+            }
+        }
+        return defaultInstance;
+    }
+
+    public long size() {
+        return count;
+    }
+
+    /**
+     * @param board packed board (X in bits 0-26, O in bits 27-53)
+     * @return the entry with its move mapped onto {@code board}, or -1 if the position is not in the table
+     */
+    public int probe(long board) {
+        long packed = Canonicalizer.canonicalWithTransform(board);
+        long key = Canonicalizer.board(packed);
+        long i = find(key);
+        if (i < 0) return -1;
+
+        int entry = valuePages[(int) (i >>> PAGE_SHIFT)].get((int) (i & PAGE_MASK)) & 0xFF;
+        int move = (entry >>> 2) & 0x1F;
+        if (move == NO_MOVE) return entry;
+        int original = Canonicalizer.mapCell(Canonicalizer.inverse(Canonicalizer.transform(packed)), move);
+        return (entry & 0x3) | (original << 2);
+    }
+
+    public static int outcome(int entry) {
+        return entry & 0x3;
+    }
+
+    /** @return the best move, or -1 for terminal positions */
+    public static int move(int entry) {
+        int m = (entry >>> 2) & 0x1F;
+        return m == NO_MOVE ? -1 : m;
+    }
+
+    public static Board.Result result(int entry) {
+        switch (outcome(entry)) {
+            case X_WINS: return Board.Result.X_WINS;
+            case O_WINS: return Board.Result.O_WINS;
+            default:     return Board.Result.DRAW;
+        }
+    }
+
+    private long key(long i) {
+        return keyPages[(int) (i >>> PAGE_SHIFT)].get((int) (i & PAGE_MASK));
+    }
+
+    private long find(long key) {
+        // Last block whose first key is <= key.
+        int lo = 0, hi = (int) blocks - 1, block = -1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (index.get(mid) <= key) {
+                block = mid;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        if (block < 0) return -1;
+
+        long first = (long) block * BLOCK_SIZE;
+        long l = first, h = Math.min(first + BLOCK_SIZE, count) - 1;
+        while (l <= h) {
+            long mid = (l + h) >>> 1;
+            long k = key(mid);
+            if (k < key) l = mid + 1;
+            else if (k > key) h = mid - 1;
+            else return mid;
+        }
+        return -1;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Writes a tablebase from entries added in strictly increasing key order.
+     * Keys go straight to the output file; values are spooled to a side file and
+     * appended after the block index on {@link #close()}.
+     */
+    public static class Writer implements Closeable {
+        private static final int IO_BUFFER_BYTES = 1 << 16;
+
+        private final Path out;
+        private final Path valuesTmp;
+        private final DataOutputStream keys;
+        private final DataOutputStream values;
+        private final DataOutputStream indexOut;
+        private final Path indexTmp;
+        private long count;
+        private long blocks;
+        private long lastKey = -1;
+
+        public Writer(Path out) throws IOException {
+            this.out = out;
+            this.valuesTmp = out.resolveSibling(out.getFileName() + ".values.tmp");
+            this.indexTmp = out.resolveSibling(out.getFileName() + ".index.tmp");
+            this.keys = open(out);
+            this.values = open(valuesTmp);
+            this.indexOut = open(indexTmp);
+            keys.write(new byte[HEADER_BYTES]);
+        }
+
+        /**
+         * @param board   canonical board
+         * @param outcome {@link #DRAW}, {@link #X_WINS} or {@link #O_WINS}
+         * @param move    best move on {@code board}, or -1 for a terminal position
+         */
+        public void add(long board, int outcome, int move) throws IOException {
+            if (board <= lastKey)
+                throw new IllegalArgumentException("Keys must be strictly increasing: " + Long.toHexString(board));
+            if (count % BLOCK_SIZE == 0) {
+                indexOut.writeLong(board);
+                blocks++;
+            }
+            keys.writeLong(board);
+            values.writeByte(outcome | ((move < 0 ? NO_MOVE : move) << 2));
+            lastKey = board;
+            count++;
+        }
+
+        public long count() {
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            values.close();
+            indexOut.close();
+            try {
+                Files.copy(indexTmp, keys);
+                Files.copy(valuesTmp, keys);
+                keys.close();
+                try (RandomAccessFile raf = new RandomAccessFile(out.toFile(), "rw")) {
+                    raf.writeInt(MAGIC);
+                    raf.writeInt(VERSION);
+                    raf.writeLong(count);
+                    raf.writeInt(BLOCK_SIZE);
+                    raf.writeInt(0);
+                    raf.writeLong(blocks);
+                }
+            } finally {
+                keys.close();
+                Files.deleteIfExists(indexTmp);
+                Files.deleteIfExists(valuesTmp);
+            }
+        }
+
+        private static DataOutputStream open(Path file) throws IOException {
+            return new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(file.toFile()), IO_BUFFER_BYTES));
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package game;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed-capacity transposition table held in two primitive arrays.
+ * <p>
+ * Positions are keyed by a Zobrist hash over the 54 bits of the packed board.
+ * Each key maps to a bucket of {@link #BUCKET_SIZE} slots that are probed in
+ * order (open addressing). When a bucket is full the entry from the oldest
+ * search, then the shallowest one, is replaced.
+ * <p>
+ * Writes are lock-free and lossy: a slot stores {@code key ^ data} next to
+ * {@code data}, so a reader racing a writer sees a key mismatch and treats it as
+ * a miss instead of reading a torn entry. Several searcher threads can share
+ * one table without synchronisation.
+ */
+public class TranspositionTable {
+    public static final int EXACT = 0;
+    public static final int LOWER = 1;
+    public static final int UPPER = 2;
+    public static final int NO_MOVE = 31;
+
+    public static final int BUCKET_SIZE = 4;
+    public static final int ENTRY_BYTES = 2 * Long.BYTES;
+
+    private static final long[] ZOBRIST = new long[2 * Board.CELLS];
+
+    static {
+        SplittableRandom rnd = new SplittableRandom(0x3D7A_C7AC_70EL);
+        for (int i = 0; i < ZOBRIST.length; i++) {
+            ZOBRIST[i] = rnd.nextLong();
+        }
+    }
+
+    // data layout: score 0-15 (signed), depth 16-23, bound 24-25, move 26-30, age 32-39, valid 63
+    private static final long VALID = 1L << 63;
+
+    private final long[] keys;
+    private final long[] data;
+    private final int bucketMask;
+    private volatile int age;
+
+    private final LongAdder probes = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+
+    /**
+     * @param sizeBytes memory budget; rounded down to a power-of-two number of buckets
+     */
+    public TranspositionTable(long sizeBytes) {
+        long buckets = Math.max(1, sizeBytes / (ENTRY_BYTES * BUCKET_SIZE));
+        buckets = Long.highestOneBit(Math.min(buckets, Integer.MAX_VALUE / BUCKET_SIZE));
+        this.keys = new long[(int) buckets * BUCKET_SIZE];
+        this.data = new long[(int) buckets * BUCKET_SIZE];
+        this.bucketMask = (int) buckets - 1;
+    }
+
+    /** Zobrist key of a packed board (X in bits 0-26, O in bits 27-53). */
+    public static long hash(long board) {
+        long key = 0L;
+        while (board != 0) {
+            key ^= ZOBRIST[Long.numberOfTrailingZeros(board)];
+            board &= board - 1;
+        }
+        return key;
+    }
+
+    /** Key delta for a stone on packed-board bit {@code bit}. */
+    public static long zobrist(int bit) {
+        return ZOBRIST[bit];
+    }
+
+    /** Marks the start of a new search so older entries become preferred victims. */
+    public void newSearch() {
+        age = (age + 1) & 0xFF;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, 0L);
+        Arrays.fill(data, 0L);
+        probes.reset();
+        hits.reset();
+    }
+
+    /**
+     * @return the packed entry for {@code key}, or 0 when there is none
+     */
+    public long probe(long key) {
+        probes.increment();
+        int base = bucket(key);
+        for (int i = base; i < base + BUCKET_SIZE; i++) {
+            long d = data[i];
+            if (d != 0 && (keys[i] ^ d) == key) {
+                hits.increment();
+                return d;
+            }
+        }
+        return 0L;
+    }
+
+    public void store(long key, int score, int depth, int bound, int move) {
+        long d = VALID
+                | (score & 0xFFFFL)
+                | ((long) (depth & 0xFF) << 16)
+                | ((long) bound << 24)
+                | ((long) (move < 0 ? NO_MOVE : move) << 26)
+                | ((long) age << 32);
+
+        int base = bucket(key);
+        int victim = base;
+        int victimPriority = Integer.MAX_VALUE;
+        for (int i = base; i < base + BUCKET_SIZE; i++) {
+            long old = data[i];
+            if (old == 0) {
+                victim = i;
+                break;
+            }
+            if ((keys[i] ^ old) == key) {
+                // Same position: keep a deeper result from this search unless ours is exact.
+                if (depth(old) > depth && age(old) == age && bound != EXACT) return;
+                victim = i;
+                break;
+            }
+            int stale = (age - age(old)) & 0xFF;
+            int priority = depth(old) - 8 * stale;
+            if (priority < victimPriority) {
+                victimPriority = priority;
+                victim = i;
+            }
+        }
+        data[victim] = d;
+        keys[victim] = key ^ d;
+    }
+
+    public static int score(long entry) {
+        return (short) entry;
+    }
+
+    public static int depth(long entry) {
+        return (int) (entry >>> 16) & 0xFF;
+    }
+
+    public static int bound(long entry) {
+        return (int) (entry >>> 24) & 0x3;
+    }
+
+    /** @return the stored best move, or -1 if none was recorded */
+    public static int move(long entry) {
+        int m = (int) (entry >>> 26) & 0x1F;
+        return m == NO_MOVE ? -1 : m;
+    }
+
+    private static int age(long entry) {
+        return (int) (entry >>> 32) & 0xFF;
+    }
+
+    private int bucket(long key) {
+        return ((int) (key ^ (key >>> 32)) & bucketMask) * BUCKET_SIZE;
+    }
+
+    public long capacity() {
+        return data.length;
+    }
+
+    public long sizeBytes() {
+        return (long) data.length * ENTRY_BYTES;
+    }
+
+    /** Fraction of probes since the last clear that found an entry. */
+    public double hitRate() {
+        long p = probes.sum();
+        return p == 0 ? 0.0 : (double) hits.sum() / p;
+    }
+
+    /** Fraction of slots holding an entry from the current search, sampled over at most 64K slots. */
+    public double occupancy() {
+        int sample = Math.min(data.length, 1 << 16);
+        int used = 0;
+        int current = age;
+        for (int i = 0; i < sample; i++) {
+            long d = data[i];
+            if (d != 0 && age(d) == current) used++;
+        }
+        return (double) used / sample;
+    }
+}
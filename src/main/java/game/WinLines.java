@@ -0,0 +1,81 @@
+package game;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The 45 winning lines from winLines.txt as 27-bit cell masks, loaded once.
+ * LINES_THROUGH[cell] lists the masks of every line passing through that cell,
+ * so a move only has to be checked against the lines it can complete.
+ */
+public final class WinLines {
+    public static final String PATH = "src/main/data/winLines.txt";
+
+    public static final long[] MASKS;
+    public static final long[][] LINES_THROUGH;
+
+    static {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(Paths.get(PATH), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read win lines from " + PATH, e);
+        }
+
+        long[] masks = new long[lines.size()];
+        int n = 0;
+        for (String line : lines) {
+            String[] tokens = line.trim().split("\\s+");
+            if (tokens.length != 3) continue; // Skip malformed lines.
+            long m = 0L;
+            for (String t : tokens) {
+                m |= 1L << Integer.parseInt(t);
+            }
+            masks[n++] = m;
+        }
+        MASKS = Arrays.copyOf(masks, n);
+
+        LINES_THROUGH = new long[Board.CELLS][];
+        for (int cell = 0; cell < Board.CELLS; cell++) {
+            int count = 0;
+            for (long m : MASKS) {
+                if ((m & (1L << cell)) != 0) count++;
+            }
+            long[] through = new long[count];
+            int i = 0;
+            for (long m : MASKS) {
+                if ((m & (1L << cell)) != 0) through[i++] = m;
+            }
+            LINES_THROUGH[cell] = through;
+        }
+    }
+
+    private WinLines() {
+    }
+
+    /**
+     * Number of lines through {@code cell} that are fully covered by {@code stones}
+     * (one player's 27-bit mask).
+     */
+    public static int completedThrough(int cell, long stones) {
+        int count = 0;
+        for (long m : LINES_THROUGH[cell]) {
+            if ((stones & m) == m) count++;
+        }
+        return count;
+    }
+
+    /** Number of lines fully covered by {@code stones} anywhere on the board. */
+    public static int completed(long stones) {
+        int count = 0;
+        for (long m : MASKS) {
+            if ((stones & m) == m) count++;
+        }
+        return count;
+    }
+}
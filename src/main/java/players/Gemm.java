@@ -0,0 +1,70 @@
+package players;
+
+/**
+ * The matrix product behind every layer of {@link PolicyValueNet}:
+ * {@code out[m][n] = bias[n] + sum_j a[m][j] * b[j][n]}, with ReLU if
+ * {@code relu}, written from {@code outAt}. Zero entries of {@code a} may be
+ * skipped, and implementations may round differently (fused multiply-adds,
+ * other summation orders), so results agree to float tolerance, not bit for bit.
+ */
+interface Gemm {
+    /** System property choosing the implementation: "auto" (default), "vector" or "scalar". */
+    String PROPERTY = "nn.simd";
+
+    void gemm(float[] a, int m, int k, float[] b, float[] bias, int n,
+              float[] out, int outAt, boolean relu);
+
+    String describe();
+
+    /**
+     * Plain Java loops. Rows are built from rank-1 updates over their
+     * {@code n} contiguous outputs, eight rows at a time, so each
+     * row of {@code b} is loaded once per block and the block's outputs stay
+     * in cache.
+     */
+    Gemm SCALAR = new Gemm() {
+        private static final int ROW_BLOCK = 8;
+
+        @Override
+        public void gemm(float[] a, int m, int k, float[] b, float[] bias, int n,
+                         float[] out, int outAt, boolean relu) {
+            for (int r0 = 0; r0 < m; r0 += ROW_BLOCK) {
+                int r1 = Math.min(m, r0 + ROW_BLOCK);
+                for (int r = r0; r < r1; r++) System.arraycopy(bias, 0, out, outAt + r * n, n);
+                for (int j = 0; j < k; j++) {
+                    int w = j * n;
+                    for (int r = r0; r < r1; r++) {
+                        float aj = a[r * k + j];
+                        if (aj == 0f) continue;
+                        int o = outAt + r * n;
+                        for (int c = 0; c < n; c++) out[o + c] += aj * b[w + c];
+                    }
+                }
+                if (relu) {
+                    for (int o = outAt + r0 * n, end = outAt + r1 * n; o < end; o++) out[o] = Math.max(out[o], 0f);
+                }
+            }
+        }
+
+        @Override
+        public String describe() {
+            return "scalar";
+        }
+    };
+
+    /**
+     * The implementation named by {@value #PROPERTY}. In "auto" mode the
+     * Vector API is used when the jdk.incubator.vector module is present
+     * ({@code --add-modules jdk.incubator.vector}), otherwise the scalar loops.
+     */
+    static Gemm best() {
+        String mode = System.getProperty(PROPERTY, "auto").toLowerCase();
+        if (mode.equals("scalar")) return SCALAR;
+        try {
+            return new VectorGemm();
+        } catch (LinkageError e) {
+            if (mode.equals("vector")) throw e;
+            return SCALAR;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package players;
+
+import game.Board;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures {@link PolicyValueNet} throughput in positions per second, one
+ * position per call and through {@link PolicyValueNet#policy}, for the
+ * scalar {@link Gemm} and for the Vector API one when the module is present.
+ * The vector results are checked against the scalar ones before timing.
+ * Uses the latest weights in {@link WeightsFile#directory()}, or random
+ * weights when there are none.
+ * <p>
+ * Usage: {@code InferenceBenchmark [positions] [seconds per measurement]},
+ * run with {@code --add-modules jdk.incubator.vector}.
+ */
+public class InferenceBenchmark {
+    private static final int DEFAULT_POSITIONS = 4096;
+    private static final double DEFAULT_SECONDS = 3;
+    /** Largest difference from the scalar logits accepted, relative to the logit's size (at least 1). */
+    static final double TOLERANCE = 1e-4;
+
+    public static void main(String[] args) throws IOException {
+        int positions = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_POSITIONS;
+        double seconds = args.length > 1 ? Double.parseDouble(args[1]) : DEFAULT_SECONDS;
+
+        PolicyValueNet net = network();
+        long[] boards = positions(positions, new Random(27));
+
+        List<PolicyValueNet> nets = new ArrayList<>();
+        nets.add(net.using(Gemm.SCALAR));
+        Gemm best = Gemm.best();
+        if (best != Gemm.SCALAR) nets.add(net.using(best));
+        else System.out.println("jdk.incubator.vector not available (or -D" + Gemm.PROPERTY + "=scalar): scalar only");
+
+        for (int i = 1; i < nets.size(); i++) {
+            double diff = maxDifference(nets.get(0), nets.get(i), boards);
+            System.out.printf("%s vs scalar: largest relative logit difference %.2e%n", nets.get(i).describeGemm(), diff);
+            if (diff > TOLERANCE)
+                throw new IllegalStateException(nets.get(i).describeGemm() + " differs from scalar by " + diff);
+        }
+
+        for (PolicyValueNet n : nets) {
+            double single = rate(seconds, boards.length, () -> {
+                for (long b : boards) n.logits(b, Board.Player.X);
+            });
+            double batched = rate(seconds, boards.length, () -> n.policy(boards, Board.Player.X));
+            System.out.printf("%-40s %,12.0f positions/s single %,12.0f positions/s batched%n",
+                    n.describeGemm(), single, batched);
+        }
+    }
+
+    private static PolicyValueNet network() throws IOException {
+        Path dir = WeightsFile.directory();
+        Path latest = dir == null ? null : WeightsFile.latest(dir);
+        if (latest != null) {
+            System.out.println("Weights: " + latest);
+            return PolicyValueNet.load(latest);
+        }
+        System.out.println("Weights: random");
+        Random r = new Random(1);
+        int c = PolicyValueNet.CHANNELS, t = PolicyValueNet.TAPS;
+        return new PolicyValueNet(
+                random(r, c * t), random(r, c),
+                random(r, c * c * t), random(r, c),
+                random(r, c * c * t), random(r, c),
+                random(r, PolicyValueNet.HIDDEN * PolicyValueNet.FLAT), random(r, PolicyValueNet.HIDDEN),
+                random(r, PolicyValueNet.CELLS * PolicyValueNet.HIDDEN), random(r, PolicyValueNet.CELLS));
+    }
+
+    private static float[] random(Random r, int n) {
+        float[] values = new float[n];
+        for (int i = 0; i < n; i++) values[i] = (float) (r.nextGaussian() * 0.05);
+        return values;
+    }
+
+    /** Random legal positions with X to move. */
+    static long[] positions(int count, Random random) {
+        long[] boards = new long[count];
+        for (int i = 0; i < count; i++) {
+            Board board = new Board();
+            int stones = 2 * random.nextInt(13);
+            for (int m = 0; m < stones; m++) {
+                long empty = board.getEmptyCells();
+                int cell;
+                do cell = random.nextInt(Board.CELLS); while ((empty >>> cell & 1) == 0);
+                board.play(cell, board.getSideToMove());
+            }
+            boards[i] = board.getBits();
+        }
+        return boards;
+    }
+
+    static double maxDifference(PolicyValueNet expected, PolicyValueNet actual, long[] boards) {
+        double worst = 0;
+        for (long b : boards) {
+            float[] e = expected.logits(b, Board.Player.X).clone();
+            float[] a = actual.logits(b, Board.Player.X);
+            for (int i = 0; i < Board.CELLS; i++) {
+                worst = Math.max(worst, Math.abs(e[i] - a[i]) / Math.max(1, Math.abs(e[i])));
+            }
+        }
+        return worst;
+    }
+
+    /** Positions per second over repeated runs of {@code pass}, after one warm-up pass. */
+    private static double rate(double seconds, int perPass, Runnable pass) {
+        pass.run();
+        long passes = 0;
+        long start = System.nanoTime();
+        long end = start + (long) (seconds * 1e9);
+        long now;
+        do {
+            pass.run();
+            passes++;
+        } while ((now = System.nanoTime()) < end);
+        return passes * perPass / ((now - start) / 1e9);
+    }
+}
@@ -0,0 +1,46 @@
+package players;
+
+import game.Board;
+import game.Game;
+import game.Minimax;
+import game.TranspositionTable;
+
+public class MinimaxPlayer extends Player {
+    private static final long MOVE_BUDGET_MILLIS = 1000;
+    // Override with -Dminimax.ttBytes=<bytes>
+    private static final long TABLE_SIZE_BYTES = Long.getLong("minimax.ttBytes", 64L * 1024 * 1024);
+    // Print search statistics for every move with -Dminimax.verbose=true
+    private static final boolean VERBOSE = Boolean.getBoolean("minimax.verbose");
+
+    private final Minimax minimax =
+            new Minimax(MOVE_BUDGET_MILLIS, new TranspositionTable(TABLE_SIZE_BYTES), true);
+
+    public MinimaxPlayer(Board.Player symbol) {
+        super(symbol);
+    }
+
+    @Override
+    public String getName() {
+        return "Minimax";
+    }
+
+    @Override
+    public void makeMove(Game game) {
+        Board board = game.getBoard();
+        if (board.getEmptyCells() == 0) return;
+
+        Minimax.SearchResult result = minimax.search(board.getBits());
+        if (VERBOSE) {
+            TranspositionTable table = minimax.getTable();
+            System.out.printf("Minimax %s: move %d, score %d, depth %d%s, %,d nodes, TT hits %.1f%%, TT full %.1f%%%n",
+                    symbol, result.move, result.score, result.depth, result.solved ? " (solved)" : "",
+                    result.nodes, 100 * table.hitRate(), 100 * table.occupancy());
+        }
+
+        int move = result.move;
+        int x =   move % 3;
+        int y = ( move / 3) % 3;
+        int z =   move / 9;
+        game.applyMove(x, y, z);
+    }
+}
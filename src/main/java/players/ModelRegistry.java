@@ -0,0 +1,182 @@
+package players;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The process-wide network, shared by every {@link NeuralNetworkPlayer}.
+ * <p>
+ * The registry loads the latest {@code weights_N} file of its directory (see
+ * {@link WeightsFile#latest}) on a background thread, so neither creating
+ * players nor the Swing event thread waits on it. A {@link WatchService}
+ * then follows the directory: when training writes a newer file, or rewrites
+ * the current one, the new model is loaded in the background and swapped in
+ * with a single volatile write. Moves already being computed finish on the
+ * model they started with, and the next move picks up the new one. Only the
+ * current model is referenced, so old ones are garbage collected. Models are
+ * immutable and {@link PolicyValueNet} keeps its scratch per thread, so one
+ * instance serves both sides.
+ */
+public final class ModelRegistry implements Closeable {
+    /** Quiet period after a file event before reloading, so a file being written is read once, whole. */
+    private static final long RELOAD_DELAY_MILLIS = 250;
+
+    private static ModelRegistry defaultInstance;
+
+    private final Path dir;
+    private final ScheduledExecutorService loader;
+    private final WatchService watcher;
+    private final CompletableFuture<PolicyValueNet> first = new CompletableFuture<>();
+    private final AtomicBoolean reloadPending = new AtomicBoolean();
+
+    private volatile Loaded current;
+
+    /** A model and the file version it came from. */
+    private static final class Loaded {
+        final Path file;
+        final FileTime modified;
+        final PolicyValueNet net;
+
+        Loaded(Path file, FileTime modified, PolicyValueNet net) {
+            this.file = file;
+            this.modified = modified;
+            this.net = net;
+        }
+    }
+
+    /**
+     * Starts loading the latest model in {@code dir} and watching it for newer ones.
+     *
+     * @param dir the weights directory, or null if there is none
+     */
+    public ModelRegistry(Path dir) {
+        this.dir = dir;
+        this.loader = Executors.newSingleThreadScheduledExecutor(r -> daemon(r, "model-loader"));
+        this.watcher = dir == null ? null : newWatcher(dir);
+        if (watcher != null) daemon(this::watch, "model-watcher").start();
+        loader.execute(this::refresh);
+    }
+
+    private static WatchService newWatcher(Path dir) {
+        try {
+            WatchService ws = FileSystems.getDefault().newWatchService();
+            dir.register(ws, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            return ws;
+        } catch (IOException e) {
+            System.err.println("Not watching " + dir + " for new weights: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /** The registry for {@link WeightsFile#directory()}, started on first use. */
+    public static synchronized ModelRegistry getDefault() {
+        if (defaultInstance == null) defaultInstance = new ModelRegistry(WeightsFile.directory());
+        return defaultInstance;
+    }
+
+    private static Thread daemon(Runnable r, String name) {
+        Thread t = new Thread(r, name);
+        t.setDaemon(true);
+        return t;
+    }
+
+    /** The current model, or null while the first one is still loading. */
+    public PolicyValueNet current() {
+        Loaded l = current;
+        return l == null ? null : l.net;
+    }
+
+    /** The file the current model came from, or null. */
+    public Path currentFile() {
+        Loaded l = current;
+        return l == null ? null : l.file;
+    }
+
+    /**
+     * The current model, waiting for the first load if it has not finished.
+     *
+     * @throws IOException if there were no weights to load, or they could not be read
+     */
+    public PolicyValueNet await() throws IOException {
+        PolicyValueNet net = current();
+        if (net != null) return net;
+        try {
+            return first.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            throw new IOException("Failed to load neural network weights", cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while loading neural network weights", e);
+        }
+    }
+
+    /** Loads the directory's latest file if it differs from the current model. Runs on the loader thread. */
+    private void refresh() {
+        reloadPending.set(false);
+        try {
+            if (dir == null) throw new IOException("No weights directory; set -Dnn.weights.dir");
+            Path latest = WeightsFile.latest(dir);
+            if (latest == null) throw new IOException("No weights_N.bin or weights_N.json files found in " + dir);
+            FileTime modified = Files.getLastModifiedTime(latest);
+            Loaded l = current;
+            if (l != null && l.file.equals(latest) && l.modified.equals(modified)) return;
+
+            long start = System.currentTimeMillis();
+            PolicyValueNet net = PolicyValueNet.load(latest);
+            current = new Loaded(latest, modified, net);
+            first.complete(net);
+            System.out.printf("Loaded %s in %,d ms%n", latest.getFileName(), System.currentTimeMillis() - start);
+        } catch (IOException | RuntimeException e) {
+            // Waiters get the failure; a file still being written gets another attempt on its next event
+            first.completeExceptionally(e);
+            System.err.println("Could not load neural network weights: " + e.getMessage());
+        }
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = watcher.take();
+                boolean relevant = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    Object name = event.context();
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW
+                            || (name instanceof Path && WeightsFile.isWeightsFile((Path) name))) {
+                        relevant = true;
+                    }
+                }
+                if (relevant && reloadPending.compareAndSet(false, true)) {
+                    loader.schedule(this::refresh, RELOAD_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+                }
+                if (!key.reset()) return;
+            }
+        } catch (InterruptedException | ClosedWatchServiceException | RejectedExecutionException e) {
+            // The registry was closed
+        }
+    }
+
+    /** Stops watching and loading; the current model stays usable. */
+    @Override
+    public void close() throws IOException {
+        loader.shutdownNow();
+        if (watcher != null) watcher.close();
+    }
+}
@@ -0,0 +1,292 @@
+package players;
+
+import game.Board;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Inference for the policy head of the PyTorch PolicyValueNet: three 3x3x3
+ * convolutions (padding 1) with ReLU, fc_common with ReLU, then fc_policy.
+ * <p>
+ * Weights are taken in PyTorch's layout ({@code [out][in][dx][dy][dz]} for
+ * the convolutions, {@code [out][in]} for the linear layers) and stored
+ * transposed in contiguous float blocks, with the output index innermost.
+ * They are never modified afterwards, so one instance can serve any number
+ * of threads.
+ * <p>
+ * Activations are kept channels-last, {@code [board][position][channel]}.
+ * Each convolution is lowered to a GEMM: an im2col pass gathers every
+ * position's 3x3x3 neighbourhood into one row of a patch matrix through a
+ * precomputed tap table, stacking {@value #CONV_BOARDS} boards into one
+ * {@code [27*boards x 27*in]} matrix, and the layer becomes that matrix times
+ * the {@code [27*in x 64]} weights. The product ({@link Gemm}, scalar or on
+ * the Vector API) runs over the 64 contiguous output channels and skips zero
+ * patch entries; on a 3x3x3 volume over half of all taps fall in the
+ * padding, and ReLU zeroes many of the rest. The linear layers use the same
+ * product. Activations live in per-thread scratch buffers, so evaluating
+ * positions allocates nothing.
+ * <p>
+ * Positions are numbered {@code x*9 + y*3 + z}, the order PyTorch flattens
+ * the network's {@code [x][y][z]} input in, while input cells and output
+ * logits use {@link Board#toIndex} order.
+ */
+public final class PolicyValueNet {
+    static final int CELLS = Board.CELLS;
+    static final int TAPS = 27;
+    static final int CHANNELS = 64;
+    static final int HIDDEN = 256;
+    static final int FLAT = CHANNELS * CELLS;
+    /** Boards sharing one pass through the linear layers in {@link #policy}. */
+    static final int BATCH = 64;
+    /**
+     * Boards whose patch rows are stacked into one GEMM per convolution. Their
+     * {@code [108 x 1728]} patch matrix (746 KB) stays in a 2 MB L2 cache
+     * together with the weights; a whole batch's (12 MB) would not, and
+     * stacking all {@value #BATCH} measured slower than one board at a time.
+     */
+    static final int CONV_BOARDS = 4;
+
+    /**
+     * For position {@code p} and tap {@code k = (dx+1)*9 + (dy+1)*3 + (dz+1)},
+     * the neighbouring position at {@code NEIGHBOUR[p * TAPS + k]}, or -1 where
+     * the tap falls in the zero padding.
+     */
+    private static final int[] NEIGHBOUR = new int[CELLS * TAPS];
+    /** Position of each board cell. */
+    private static final int[] POSITION = new int[CELLS];
+
+    static {
+        for (int x = 0; x < 3; x++) for (int y = 0; y < 3; y++) for (int z = 0; z < 3; z++) {
+            int p = x * 9 + y * 3 + z;
+            POSITION[Board.toIndex(x, y, z)] = p;
+            for (int dx = -1; dx <= 1; dx++) for (int dy = -1; dy <= 1; dy++) for (int dz = -1; dz <= 1; dz++) {
+                int xx = x + dx, yy = y + dy, zz = z + dz;
+                boolean inside = xx >= 0 && xx < 3 && yy >= 0 && yy < 3 && zz >= 0 && zz < 3;
+                NEIGHBOUR[p * TAPS + (dx + 1) * 9 + (dy + 1) * 3 + (dz + 1)] = inside ? xx * 9 + yy * 3 + zz : -1;
+            }
+        }
+    }
+
+    private final float[] conv1Weight, conv1Bias;       // [27*1][64], [64]
+    private final float[] conv2Weight, conv2Bias;       // [27*64][64], [64]
+    private final float[] conv3Weight, conv3Bias;       // [27*64][64], [64]
+    private final float[] fcCommonWeight, fcCommonBias; // [27*64][256], [256]
+    private final float[] fcPolicyWeight, fcPolicyBias; // [256][27], [27]
+
+    private final Gemm gemm;
+    private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+
+    /** Reusable activations for one thread. */
+    private static final class Scratch {
+        final float[] input = new float[BATCH * CELLS];
+        final float[] patches = new float[CONV_BOARDS * CELLS * TAPS * CHANNELS]; // [boards * 27 positions][27*in]
+        final float[] act1 = new float[CONV_BOARDS * FLAT];
+        final float[] act2 = new float[CONV_BOARDS * FLAT];
+        final float[] flat = new float[BATCH * FLAT];
+        final float[] common = new float[BATCH * HIDDEN];
+        final float[] logits = new float[BATCH * CELLS];
+        final float[] single = new float[CELLS];
+    }
+
+    /** All tensors in PyTorch's layout, flattened row-major. */
+    public PolicyValueNet(float[] conv1Weight, float[] conv1Bias,
+                          float[] conv2Weight, float[] conv2Bias,
+                          float[] conv3Weight, float[] conv3Bias,
+                          float[] fcCommonWeight, float[] fcCommonBias,
+                          float[] fcPolicyWeight, float[] fcPolicyBias) {
+        this.gemm = Gemm.best();
+        this.conv1Weight = convWeight(check("conv1.weight", conv1Weight, CHANNELS * TAPS), 1);
+        this.conv1Bias = check("conv1.bias", conv1Bias, CHANNELS).clone();
+        this.conv2Weight = convWeight(check("conv2.weight", conv2Weight, CHANNELS * CHANNELS * TAPS), CHANNELS);
+        this.conv2Bias = check("conv2.bias", conv2Bias, CHANNELS).clone();
+        this.conv3Weight = convWeight(check("conv3.weight", conv3Weight, CHANNELS * CHANNELS * TAPS), CHANNELS);
+        this.conv3Bias = check("conv3.bias", conv3Bias, CHANNELS).clone();
+        this.fcCommonBias = check("fc_common.bias", fcCommonBias, HIDDEN).clone();
+        this.fcPolicyWeight = transpose(check("fc_policy.weight", fcPolicyWeight, CELLS * HIDDEN), CELLS, HIDDEN);
+        this.fcPolicyBias = check("fc_policy.bias", fcPolicyBias, CELLS).clone();
+
+        // PyTorch flattens conv3's output channel-major ([c][p]); ours is [p][c]
+        check("fc_common.weight", fcCommonWeight, HIDDEN * FLAT);
+        this.fcCommonWeight = new float[FLAT * HIDDEN];
+        for (int i = 0; i < HIDDEN; i++)
+            for (int c = 0; c < CHANNELS; c++)
+                for (int p = 0; p < CELLS; p++)
+                    this.fcCommonWeight[(p * CHANNELS + c) * HIDDEN + i] = fcCommonWeight[i * FLAT + c * CELLS + p];
+    }
+
+    /** The same weights, multiplied by {@code gemm}. */
+    private PolicyValueNet(PolicyValueNet net, Gemm gemm) {
+        this.gemm = gemm;
+        this.conv1Weight = net.conv1Weight;
+        this.conv1Bias = net.conv1Bias;
+        this.conv2Weight = net.conv2Weight;
+        this.conv2Bias = net.conv2Bias;
+        this.conv3Weight = net.conv3Weight;
+        this.conv3Bias = net.conv3Bias;
+        this.fcCommonWeight = net.fcCommonWeight;
+        this.fcCommonBias = net.fcCommonBias;
+        this.fcPolicyWeight = net.fcPolicyWeight;
+        this.fcPolicyBias = net.fcPolicyBias;
+    }
+
+    /** A network sharing these weights but computing with {@code gemm}. */
+    PolicyValueNet using(Gemm gemm) {
+        return new PolicyValueNet(this, gemm);
+    }
+
+    /** The matrix product in use, e.g. "scalar" or the vector width. */
+    public String describeGemm() {
+        return gemm.describe();
+    }
+
+    /** {@code [64][in][27 taps]} to {@code [27 taps][in][64]}, matching a patch row. */
+    private static float[] convWeight(float[] weight, int inChannels) {
+        float[] t = new float[weight.length];
+        for (int oc = 0; oc < CHANNELS; oc++)
+            for (int ic = 0; ic < inChannels; ic++)
+                for (int k = 0; k < TAPS; k++)
+                    t[(k * inChannels + ic) * CHANNELS + oc] = weight[(oc * inChannels + ic) * TAPS + k];
+        return t;
+    }
+
+    private static float[] transpose(float[] m, int rows, int cols) {
+        float[] t = new float[m.length];
+        for (int r = 0; r < rows; r++)
+            for (int c = 0; c < cols; c++)
+                t[c * rows + r] = m[r * cols + c];
+        return t;
+    }
+
+    private static float[] check(String name, float[] tensor, int length) {
+        if (tensor == null || tensor.length != length)
+            throw new IllegalArgumentException(name + " must hold " + length + " values, got "
+                    + (tensor == null ? "none" : tensor.length));
+        return tensor;
+    }
+
+    /** Builds the network from a state_dict read by {@link WeightsFile}. */
+    public static PolicyValueNet of(Map<String, WeightsFile.Tensor> tensors) throws IOException {
+        return new PolicyValueNet(
+                tensor(tensors, "conv1.weight"), tensor(tensors, "conv1.bias"),
+                tensor(tensors, "conv2.weight"), tensor(tensors, "conv2.bias"),
+                tensor(tensors, "conv3.weight"), tensor(tensors, "conv3.bias"),
+                tensor(tensors, "fc_common.weight"), tensor(tensors, "fc_common.bias"),
+                tensor(tensors, "fc_policy.weight"), tensor(tensors, "fc_policy.bias"));
+    }
+
+    /** Loads a {@code weights_N.bin} or {@code weights_N.json} file. */
+    public static PolicyValueNet load(Path file) throws IOException {
+        return of(WeightsFile.load(file));
+    }
+
+    private static float[] tensor(Map<String, WeightsFile.Tensor> tensors, String name) throws IOException {
+        WeightsFile.Tensor t = tensors.get(name);
+        if (t == null) throw new IOException("Missing tensor " + name);
+        return t.values;
+    }
+
+    /**
+     * Policy logits for every cell of {@code board} (packed, X in bits 0-26 and
+     * O in bits 27-53) from the point of view of {@code me}. The array is this
+     * thread's scratch buffer: it is overwritten by the thread's next call.
+     */
+    public float[] logits(long board, Board.Player me) {
+        Scratch s = scratch.get();
+        encode(board, me, s.input, 0);
+        trunk(1, s);
+        gemm.gemm(s.flat, 1, FLAT, fcCommonWeight, fcCommonBias, HIDDEN, s.common, 0, true);
+        gemm.gemm(s.common, 1, HIDDEN, fcPolicyWeight, fcPolicyBias, CELLS, s.logits, 0, false);
+        System.arraycopy(s.logits, 0, s.single, 0, CELLS);
+        return s.single;
+    }
+
+    /**
+     * Move probabilities for each of {@code boards}, all with {@code toMove} to
+     * play: a softmax of the logits over the board's empty cells, zero on
+     * occupied cells, indexed by {@link Board#toIndex}. A full board gets all
+     * zeros.
+     * <p>
+     * Boards go through the convolutions {@value #CONV_BOARDS} at a time and
+     * through the linear layers {@value #BATCH} at a time, so each weight row
+     * is read once per group rather than once per board.
+     */
+    public float[][] policy(long[] boards, Board.Player toMove) {
+        Scratch s = scratch.get();
+        float[][] policies = new float[boards.length][];
+        for (int from = 0; from < boards.length; from += BATCH) {
+            int n = Math.min(BATCH, boards.length - from);
+            for (int b = 0; b < n; b++) encode(boards[from + b], toMove, s.input, b * CELLS);
+            trunk(n, s);
+            gemm.gemm(s.flat, n, FLAT, fcCommonWeight, fcCommonBias, HIDDEN, s.common, 0, true);
+            gemm.gemm(s.common, n, HIDDEN, fcPolicyWeight, fcPolicyBias, CELLS, s.logits, 0, false);
+            for (int b = 0; b < n; b++) {
+                long board = boards[from + b];
+                long empty = ~(board | board >>> Board.O_SHIFT) & Board.CELL_MASK;
+                policies[from + b] = softmax(s.logits, b * CELLS, empty);
+            }
+        }
+        return policies;
+    }
+
+    private static float[] softmax(float[] logits, int at, long legal) {
+        float[] p = new float[CELLS];
+        if (legal == 0) return p;
+        float max = Float.NEGATIVE_INFINITY;
+        for (int i = 0; i < CELLS; i++) if ((legal >>> i & 1) != 0) max = Math.max(max, logits[at + i]);
+        float sum = 0f;
+        for (int i = 0; i < CELLS; i++) {
+            if ((legal >>> i & 1) == 0) continue;
+            p[i] = (float) Math.exp(logits[at + i] - max);
+            sum += p[i];
+        }
+        for (int i = 0; i < CELLS; i++) p[i] /= sum;
+        return p;
+    }
+
+    /** The input planes of {@code board}, +1 for {@code me}, -1 for the opponent, at {@code input[at..at+27)}. */
+    private static void encode(long board, Board.Player me, float[] input, int at) {
+        long mine = me == Board.Player.X ? board : board >>> Board.O_SHIFT;
+        long theirs = me == Board.Player.X ? board >>> Board.O_SHIFT : board;
+        for (int cell = 0; cell < CELLS; cell++) {
+            float v = (mine >>> cell & 1) != 0 ? 1f : (theirs >>> cell & 1) != 0 ? -1f : 0f;
+            input[at + POSITION[cell]] = v;
+        }
+    }
+
+    /** The three convolutions over the first {@code n} encoded boards; conv3's output lands in {@code s.flat}. */
+    private void trunk(int n, Scratch s) {
+        for (int from = 0; from < n; from += CONV_BOARDS) {
+            int boards = Math.min(CONV_BOARDS, n - from);
+            conv(s.input, from * CELLS, boards, 1, conv1Weight, conv1Bias, s.patches, s.act1, 0);
+            conv(s.act1, 0, boards, CHANNELS, conv2Weight, conv2Bias, s.patches, s.act2, 0);
+            conv(s.act2, 0, boards, CHANNELS, conv3Weight, conv3Bias, s.patches, s.flat, from * FLAT);
+        }
+    }
+
+    /**
+     * One 3x3x3 convolution with padding 1 and ReLU over {@code n} boards, from
+     * {@code in[n][27][inChannels]} starting at {@code inAt} to {@code out[n][27][64]}
+     * starting at {@code outAt}, as a single GEMM over the boards' stacked patch rows.
+     */
+    private void conv(float[] in, int inAt, int n, int inChannels, float[] weight, float[] bias,
+                      float[] patches, float[] out, int outAt) {
+        // im2col: row b*27 + p holds, tap by tap, the channels of p's neighbour on board b, or zeros in the padding
+        int cols = TAPS * inChannels;
+        for (int b = 0; b < n; b++) {
+            int board = b * CELLS;
+            for (int p = 0; p < CELLS; p++) {
+                int row = (board + p) * cols;
+                for (int k = 0; k < TAPS; k++) {
+                    int q = NEIGHBOUR[p * TAPS + k];
+                    int at = row + k * inChannels;
+                    if (q < 0) Arrays.fill(patches, at, at + inChannels, 0f);
+                    else System.arraycopy(in, inAt + (board + q) * inChannels, patches, at, inChannels);
+                }
+            }
+        }
+        gemm.gemm(patches, n * CELLS, cols, weight, bias, CHANNELS, out, outAt, true);
+    }
+}
@@ -0,0 +1,61 @@
+package players;
+
+import game.Board;
+import game.Game;
+import game.Minimax;
+import game.Tablebase;
+import game.TranspositionTable;
+
+/**
+ * Plays the stored perfect move from the {@link Tablebase}. Positions the
+ * table does not hold (or a missing table) fall back to a Minimax search.
+ */
+public class TablebasePlayer extends Player {
+    private static final long FALLBACK_BUDGET_MILLIS = 1000;
+    private static final long FALLBACK_TABLE_BYTES = 16L * 1024 * 1024;
+    // Print where each move came from with -Dtablebase.verbose=true
+    private static final boolean VERBOSE = Boolean.getBoolean("tablebase.verbose");
+
+    private final Tablebase tablebase = Tablebase.getDefault();
+    private Minimax fallback;
+
+    public TablebasePlayer(Board.Player symbol) {
+        super(symbol);
+    }
+
+    @Override
+    public String getName() {
+        return "Tablebase";
+    }
+
+    @Override
+    public void makeMove(Game game) {
+        Board board = game.getBoard();
+        if (board.getEmptyCells() == 0) return;
+
+        int move = -1;
+        if (tablebase != null) {
+            int entry = tablebase.probe(board.getBits());
+            move = entry < 0 ? -1 : Tablebase.move(entry);
+            if (move >= 0 && VERBOSE) {
+                System.out.printf("Tablebase %s: move %d, %s%n", symbol, move, Tablebase.result(entry));
+            }
+        }
+        if (move < 0) {
+            if (fallback == null) {
+                fallback = new Minimax(FALLBACK_BUDGET_MILLIS, new TranspositionTable(FALLBACK_TABLE_BYTES), true);
+            }
+            Minimax.SearchResult result = fallback.search(board.getBits());
+            if (VERBOSE) {
+                System.out.printf("Tablebase %s: position not in table, Minimax move %d (score %d)%n",
+                        symbol, result.move, result.score);
+            }
+            move = result.move;
+        }
+
+        int x =   move % 3;
+        int y = ( move / 3) % 3;
+        int z =   move / 9;
+        game.applyMove(x, y, z);
+    }
+}
@@ -0,0 +1,77 @@
+package players;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link Gemm} on {@link FloatVector}s of the platform's preferred width. Each
+ * output row is built in registers, {@value #BLOCK} vectors of columns at a
+ * time, with one fused multiply-add per loaded weight vector and the row of
+ * {@code a} broadcast lane by lane; columns past the last whole vector fall
+ * back to scalar code. Only loaded when the jdk.incubator.vector module is
+ * present, see {@link Gemm#best()}.
+ */
+final class VectorGemm implements Gemm {
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+    private static final int L = SPECIES.length();
+    private static final int BLOCK = 4;
+
+    @Override
+    public void gemm(float[] a, int m, int k, float[] b, float[] bias, int n,
+                     float[] out, int outAt, boolean relu) {
+        int vectorCols = SPECIES.loopBound(n);
+        FloatVector zero = FloatVector.zero(SPECIES);
+        for (int r = 0; r < m; r++) {
+            int row = r * k;
+            int o = outAt + r * n;
+            int c = 0;
+            for (; c + BLOCK * L <= vectorCols; c += BLOCK * L) {
+                FloatVector acc0 = FloatVector.fromArray(SPECIES, bias, c);
+                FloatVector acc1 = FloatVector.fromArray(SPECIES, bias, c + L);
+                FloatVector acc2 = FloatVector.fromArray(SPECIES, bias, c + 2 * L);
+                FloatVector acc3 = FloatVector.fromArray(SPECIES, bias, c + 3 * L);
+                for (int j = 0; j < k; j++) {
+                    float aj = a[row + j];
+                    if (aj == 0f) continue;
+                    FloatVector av = FloatVector.broadcast(SPECIES, aj);
+                    int w = j * n + c;
+                    acc0 = FloatVector.fromArray(SPECIES, b, w).fma(av, acc0);
+                    acc1 = FloatVector.fromArray(SPECIES, b, w + L).fma(av, acc1);
+                    acc2 = FloatVector.fromArray(SPECIES, b, w + 2 * L).fma(av, acc2);
+                    acc3 = FloatVector.fromArray(SPECIES, b, w + 3 * L).fma(av, acc3);
+                }
+                if (relu) {
+                    acc0 = acc0.lanewise(VectorOperators.MAX, zero);
+                    acc1 = acc1.lanewise(VectorOperators.MAX, zero);
+                    acc2 = acc2.lanewise(VectorOperators.MAX, zero);
+                    acc3 = acc3.lanewise(VectorOperators.MAX, zero);
+                }
+                acc0.intoArray(out, o + c);
+                acc1.intoArray(out, o + c + L);
+                acc2.intoArray(out, o + c + 2 * L);
+                acc3.intoArray(out, o + c + 3 * L);
+            }
+            for (; c < vectorCols; c += L) {
+                FloatVector acc = FloatVector.fromArray(SPECIES, bias, c);
+                for (int j = 0; j < k; j++) {
+                    float aj = a[row + j];
+                    if (aj == 0f) continue;
+                    acc = FloatVector.fromArray(SPECIES, b, j * n + c).fma(FloatVector.broadcast(SPECIES, aj), acc);
+                }
+                if (relu) acc = acc.lanewise(VectorOperators.MAX, zero);
+                acc.intoArray(out, o + c);
+            }
+            for (; c < n; c++) {
+                float sum = bias[c];
+                for (int j = 0; j < k; j++) sum += a[row + j] * b[j * n + c];
+                out[o + c] = relu ? Math.max(sum, 0f) : sum;
+            }
+        }
+    }
+
+    @Override
+    public String describe() {
+        return "vector, " + L + " floats per " + SPECIES.vectorBitSize() + "-bit vector";
+    }
+}
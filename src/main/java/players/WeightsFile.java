@@ -0,0 +1,293 @@
+package players;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Binary network weights: named float32 tensors behind a fixed header, read
+ * by memory-mapping the file and bulk-copying each tensor, so loading costs
+ * no parsing.
+ * <p>
+ * File layout (little-endian, like the tensors PyTorch writes):
+ * <pre>
+ *   0  int  MAGIC
+ *   4  int  VERSION
+ *   8  int  tensor count n
+ *  12  int  reserved
+ *  16  n entries of ENTRY_BYTES:
+ *        byte[32] name, UTF-8, zero-padded
+ *        int      rank (at most MAX_RANK)
+ *        int[5]   dimensions, unused ones 0
+ *        long     byte offset of the data from the start of the file
+ *      float32 data of every tensor, row-major, each starting on a 64-byte boundary
+ * </pre>
+ * {@link #main} converts the {@code weights_N.json} exports of training into
+ * {@code weights_N.bin} files next to them.
+ */
+public final class WeightsFile {
+    /** Directory searched for {@code weights_N} files, unless {@code -Dnn.weights.dir} names another. */
+    public static final String DEFAULT_DIR = "src/main/resources/NeuralNetwork";
+    /** The same directory as a classpath resource, used when the default directory is not found. */
+    public static final String RESOURCE_DIR = "NeuralNetwork";
+
+    public static final int MAGIC = 0x574E5650; // "PVNW" read little-endian
+    public static final int VERSION = 1;
+    static final int MAX_RANK = 5;
+    private static final int HEADER_BYTES = 16;
+    private static final int NAME_BYTES = 32;
+    static final int ENTRY_BYTES = NAME_BYTES + 4 + MAX_RANK * 4 + 8;
+    private static final int ALIGN = 64;
+
+    private static final ValueLayout.OfInt INT = ValueLayout.JAVA_INT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+    private static final ValueLayout.OfLong LONG = ValueLayout.JAVA_LONG_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+    private static final ValueLayout.OfFloat FLOAT = ValueLayout.JAVA_FLOAT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+
+    private static final Pattern WEIGHTS_NAME = Pattern.compile("weights_(\\d+)\\.(bin|json)");
+
+    /** One named tensor: its shape and its values, row-major. */
+    public static final class Tensor {
+        public final int[] shape;
+        public final float[] values;
+
+        public Tensor(int[] shape, float[] values) {
+            long n = 1;
+            for (int d : shape) n *= d;
+            if (shape.length > MAX_RANK || n != values.length)
+                throw new IllegalArgumentException("Shape does not match " + values.length + " values");
+            this.shape = shape;
+            this.values = values;
+        }
+    }
+
+    private WeightsFile() {
+    }
+
+    /** Reads a binary weights file. */
+    public static Map<String, Tensor> read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+             Arena arena = Arena.ofConfined()) {
+            return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size(), arena), file.toString());
+        }
+    }
+
+    private static Map<String, Tensor> read(MemorySegment file, String name) throws IOException {
+        if (file.byteSize() < HEADER_BYTES || file.get(INT, 0) != MAGIC || file.get(INT, 4) != VERSION)
+            throw new IOException("Not a version " + VERSION + " weights file: " + name);
+        int count = file.get(INT, 8);
+        if (count < 0 || HEADER_BYTES + (long) count * ENTRY_BYTES > file.byteSize())
+            throw new IOException("Truncated weights file: " + name);
+
+        Map<String, Tensor> tensors = new LinkedHashMap<>();
+        for (int t = 0; t < count; t++) {
+            long entry = HEADER_BYTES + (long) t * ENTRY_BYTES;
+            byte[] nameBytes = file.asSlice(entry, NAME_BYTES).toArray(ValueLayout.JAVA_BYTE);
+            int nameLength = 0;
+            while (nameLength < NAME_BYTES && nameBytes[nameLength] != 0) nameLength++;
+            String tensorName = new String(nameBytes, 0, nameLength, StandardCharsets.UTF_8);
+
+            int rank = file.get(INT, entry + NAME_BYTES);
+            if (rank < 0 || rank > MAX_RANK) throw new IOException("Bad rank " + rank + " for " + tensorName + " in " + name);
+            int[] shape = new int[rank];
+            long length = 1;
+            for (int d = 0; d < rank; d++) {
+                shape[d] = file.get(INT, entry + NAME_BYTES + 4 + d * 4L);
+                length *= shape[d];
+            }
+            long offset = file.get(LONG, entry + NAME_BYTES + 4 + MAX_RANK * 4);
+            if (length < 0 || length > Integer.MAX_VALUE || offset < 0 || offset + length * Float.BYTES > file.byteSize())
+                throw new IOException("Tensor " + tensorName + " lies outside " + name);
+
+            float[] values = new float[(int) length];
+            MemorySegment.copy(file, FLOAT, offset, values, 0, values.length);
+            tensors.put(tensorName, new Tensor(shape, values));
+        }
+        return tensors;
+    }
+
+    /** Writes {@code tensors} in the binary format, through a temporary file so readers never see half of it. */
+    public static void write(Path file, Map<String, Tensor> tensors) throws IOException {
+        long dataStart = align(HEADER_BYTES + (long) tensors.size() * ENTRY_BYTES);
+        long size = dataStart;
+        for (Tensor t : tensors.values()) size = align(size + (long) t.values.length * Float.BYTES);
+
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             Arena arena = Arena.ofConfined()) {
+            MemorySegment out = channel.map(FileChannel.MapMode.READ_WRITE, 0, size, arena);
+            out.set(INT, 0, MAGIC);
+            out.set(INT, 4, VERSION);
+            out.set(INT, 8, tensors.size());
+
+            long entry = HEADER_BYTES;
+            long offset = dataStart;
+            for (Map.Entry<String, Tensor> e : tensors.entrySet()) {
+                byte[] name = e.getKey().getBytes(StandardCharsets.UTF_8);
+                if (name.length > NAME_BYTES) throw new IllegalArgumentException("Tensor name too long: " + e.getKey());
+                Tensor t = e.getValue();
+                MemorySegment.copy(name, 0, out, ValueLayout.JAVA_BYTE, entry, name.length);
+                out.set(INT, entry + NAME_BYTES, t.shape.length);
+                for (int d = 0; d < t.shape.length; d++) out.set(INT, entry + NAME_BYTES + 4 + d * 4L, t.shape[d]);
+                out.set(LONG, entry + NAME_BYTES + 4 + MAX_RANK * 4, offset);
+                MemorySegment.copy(t.values, 0, out, FLOAT, offset, t.values.length);
+                entry += ENTRY_BYTES;
+                offset = align(offset + (long) t.values.length * Float.BYTES);
+            }
+            out.force();
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static long align(long offset) {
+        return (offset + ALIGN - 1) & -ALIGN;
+    }
+
+    /** Reads a state_dict exported as JSON nested lists, keyed by parameter name. */
+    public static Map<String, Tensor> readJson(Path file) throws IOException {
+        JsonNode root = new ObjectMapper().readTree(file.toFile());
+        Map<String, Tensor> tensors = new LinkedHashMap<>();
+        var fields = root.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            JsonNode node = field.getValue();
+            List<Integer> dims = new ArrayList<>();
+            for (JsonNode n = node; n.isArray(); n = n.get(0)) {
+                dims.add(n.size());
+                if (n.size() == 0) break;
+            }
+            int[] shape = dims.stream().mapToInt(Integer::intValue).toArray();
+            float[] values = new float[count(node)];
+            flatten(node, values, 0);
+            tensors.put(field.getKey(), new Tensor(shape, values));
+        }
+        return tensors;
+    }
+
+    private static int count(JsonNode node) {
+        if (!node.isArray()) return 1;
+        int n = 0;
+        for (JsonNode child : node) n += count(child);
+        return n;
+    }
+
+    private static int flatten(JsonNode node, float[] values, int at) {
+        if (!node.isArray()) {
+            values[at] = node.floatValue();
+            return at + 1;
+        }
+        for (JsonNode child : node) at = flatten(child, values, at);
+        return at;
+    }
+
+    /**
+     * The directory holding {@code weights_N} files: {@code -Dnn.weights.dir},
+     * else {@link #DEFAULT_DIR}, else {@link #RESOURCE_DIR} on the classpath
+     * when it is a plain directory. Null if none exists.
+     */
+    public static Path directory() {
+        String configured = System.getProperty("nn.weights.dir");
+        if (configured != null) return Paths.get(configured);
+        Path dir = Paths.get(DEFAULT_DIR);
+        if (Files.isDirectory(dir)) return dir;
+        URL url = WeightsFile.class.getClassLoader().getResource(RESOURCE_DIR);
+        if (url != null && url.getProtocol().equals("file")) {
+            try {
+                return Paths.get(url.toURI());
+            } catch (URISyntaxException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The highest-numbered {@code weights_N.bin} or {@code weights_N.json} in
+     * {@code dir}, preferring the binary file when both exist, or null.
+     */
+    public static Path latest(Path dir) throws IOException {
+        Path best = null;
+        long bestNumber = -1;
+        boolean bestBinary = false;
+        try (var files = Files.list(dir)) {
+            for (Path f : (Iterable<Path>) files::iterator) {
+                Matcher m = WEIGHTS_NAME.matcher(f.getFileName().toString());
+                if (!m.matches()) continue;
+                long number = Long.parseLong(m.group(1));
+                boolean binary = m.group(2).equals("bin");
+                if (number > bestNumber || (number == bestNumber && binary && !bestBinary)) {
+                    best = f;
+                    bestNumber = number;
+                    bestBinary = binary;
+                }
+            }
+        }
+        return best;
+    }
+
+    /** Whether {@code file} is named like a {@code weights_N.bin} or {@code weights_N.json} file. */
+    public static boolean isWeightsFile(Path file) {
+        return WEIGHTS_NAME.matcher(file.getFileName().toString()).matches();
+    }
+
+    /** Reads either format, by file extension. */
+    public static Map<String, Tensor> load(Path file) throws IOException {
+        return file.getFileName().toString().endsWith(".json") ? readJson(file) : read(file);
+    }
+
+    /**
+     * Converts JSON exports to binary files next to them.
+     * Usage: {@code WeightsFile [weights_N.json ...]}; with no arguments every
+     * {@code weights_N.json} in {@link #directory()} that has no binary yet.
+     */
+    public static void main(String[] args) throws IOException {
+        List<Path> inputs = new ArrayList<>();
+        if (args.length > 0) {
+            for (String a : args) inputs.add(Paths.get(a));
+        } else {
+            Path dir = directory();
+            if (dir == null) {
+                System.err.println("No weights directory found; pass the JSON files to convert");
+                return;
+            }
+            File[] json = dir.toFile().listFiles((d, n) -> n.matches("weights_\\d+\\.json"));
+            if (json != null) {
+                for (File f : json) {
+                    if (!Files.exists(binaryFor(f.toPath()))) inputs.add(f.toPath());
+                }
+            }
+        }
+        for (Path in : inputs) {
+            long start = System.currentTimeMillis();
+            Path out = binaryFor(in);
+            write(out, readJson(in));
+            System.out.printf("Wrote %s (%,d bytes) in %,d ms%n", out, Files.size(out), System.currentTimeMillis() - start);
+        }
+    }
+
+    static Path binaryFor(Path json) {
+        String name = json.getFileName().toString();
+        return json.resolveSibling(name.substring(0, name.length() - ".json".length()) + ".bin");
+    }
+}
@@ -0,0 +1,173 @@
+package precomputing.minimax;
+
+import com.carrotsearch.hppc.LongArrayList;
+import support.LongStore;
+
+import java.io.IOException;
+import java.nio.LongBuffer;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+/**
+ * Sizes expansion batches as a run goes, instead of from fixed constants.
+ * <p>
+ * The scheduler works in children rather than boards: a parent holding
+ * {@code d} stones has exactly {@code 27 - d} children, so the same target
+ * yields batches three times larger near the end of the game than at the
+ * start. Each batch is capped by the largest single buffer for that depth
+ * ({@link ExpandAndClassify#maxBatchBoards(int)}), by the device memory all
+ * pipeline slots share ({@link #deviceLimit(int)}), and by the host memory the
+ * backend has for batches: pinned staging for the GPU, the heap for the CPU
+ * ({@link ExpandAndClassify#hostBytesPerBoard(int)}). Within those caps the
+ * target follows measured batch times: batches that finish faster than {@link #MIN_BATCH_NANOS} are mostly
+ * launch and transfer overhead, so the target doubles; batches slower than
+ * {@link #MAX_BATCH_NANOS} hold too much in flight, so it halves. A batch
+ * is timed from the end of the previous one, which in a full pipeline is the
+ * rate the sink sees. The target also halves while the backend reports its
+ * host memory past the budget ({@link ExpandAndClassify#overHostBudget(long)}):
+ * for the GPU that is pinned staging grown by power-of-two size classes and
+ * buffers kept from earlier depths, for the CPU a heap running short.
+ */
+public class BatchScheduler {
+    static final long MIN_BATCH_NANOS = 50_000_000L;
+    static final long MAX_BATCH_NANOS = 250_000_000L;
+    private static final long INITIAL_CHILDREN = 1L << 22;
+    private static final long MIN_CHILDREN = 1L << 12;
+
+    private final ExpandAndClassify expander;
+    private final long hostBudgetBytes;
+    private long targetChildren = INITIAL_CHILDREN;
+
+    /** Sizes of batches handed out and not yet finished, oldest first: {boards, children}. */
+    private final ArrayDeque<long[]> inFlight = new ArrayDeque<>();
+    private long lastBatchEnd;
+
+    /**
+     * @param hostBudgetBytes host memory the batches in flight may hold
+     */
+    public BatchScheduler(ExpandAndClassify expander, long hostBudgetBytes) {
+        this.expander = expander;
+        this.hostBudgetBytes = hostBudgetBytes;
+    }
+
+    /** Current target in children per batch. */
+    public long targetChildren() {
+        return targetChildren;
+    }
+
+    /**
+     * Hard cap on a batch of parents holding {@code depth} stones: device
+     * buffers, plus the host memory the backend needs for the input and every
+     * child of the batches in flight.
+     */
+    public int limit(int depth) {
+        long hostBoards = expander.hostBytesAvailable(hostBudgetBytes) / expander.hostBytesPerBoard(depth);
+        return (int) Math.max(1, Math.min(deviceLimit(depth), hostBoards));
+    }
+
+    /**
+     * Largest batch, at most {@link ExpandAndClassify#maxBatchBoards(int)}, whose
+     * buffers in every pipeline slot fit the device together. Each buffer may
+     * reach the largest single allocation, and a slot holds five of them, so
+     * without this cap three slots can ask for several times the device memory.
+     */
+    int deviceLimit(int depth) {
+        int children = ExpandAndClassify.childrenPerBoard(depth);
+        int slots = ExpandAndClassify.PIPELINE_SLOTS;
+        long total = expander.deviceMemBytes();
+        int outputs = ExpandAndClassify.Output.values().length;
+        long boards = Math.min(expander.maxBatchBoards(depth),
+                total / ((long) slots * (1 + outputs * children) * Long.BYTES));
+        // The pool rounds each buffer up to a power of two; step down a size class until that fits too
+        while (boards > 1 && slots * ExpandAndClassify.deviceBytesPerSlot(boards, depth) > total) {
+            long outBytes = boards * children * Long.BYTES;
+            boards = Math.max(1, Long.highestOneBit(outBytes - 1) / ((long) children * Long.BYTES));
+        }
+        return (int) Math.max(1, boards);
+    }
+
+    /** Size of the next batch of parents holding {@code depth} stones. */
+    public int next(int depth) {
+        int children = ExpandAndClassify.childrenPerBoard(depth);
+        return (int) Math.max(1, Math.min(limit(depth), targetChildren / children));
+    }
+
+    /** Records a finished batch and moves the target. */
+    void record(long children, long nanos) {
+        if (nanos > MAX_BATCH_NANOS || expander.overHostBudget(hostBudgetBytes)) {
+            targetChildren = Math.max(MIN_CHILDREN, targetChildren / 2);
+        } else if (nanos < MIN_BATCH_NANOS && children >= targetChildren / 2) {
+            // Only a batch near the target says anything about a larger one; the tail of a frontier is short
+            targetChildren = Math.min(Long.MAX_VALUE / 2, targetChildren * 2);
+        }
+    }
+
+    /** Consecutive batches of {@code boards}, each sized when it is requested. */
+    public Iterator<ExpandAndClassify.Batch> batches(LongArrayList boards, int depth) {
+        return batches(boards.size(), depth, (from, n) -> ExpandAndClassify.Batch.of(boards, (int) from, n));
+    }
+
+    /**
+     * Consecutive batches of an off-heap frontier, each sized when it is requested.
+     * Batches are views of the store, which the expander copies straight into
+     * its staging; the store must not grow while they are in use.
+     */
+    public Iterator<ExpandAndClassify.Batch> batches(LongStore boards, int depth) {
+        return batches(boards.size(), depth, (from, n) -> ExpandAndClassify.Batch.of(boards, from, n));
+    }
+
+    private interface Slicer {
+        ExpandAndClassify.Batch slice(long from, int n);
+    }
+
+    private Iterator<ExpandAndClassify.Batch> batches(long total, int depth, Slicer slicer) {
+        inFlight.clear();
+        lastBatchEnd = 0;
+        int children = ExpandAndClassify.childrenPerBoard(depth);
+        return new Iterator<>() {
+            private long start = 0;
+
+            @Override
+            public boolean hasNext() {
+                return start < total;
+            }
+
+            @Override
+            public ExpandAndClassify.Batch next() {
+                int n = (int) Math.min(BatchScheduler.this.next(depth), total - start);
+                ExpandAndClassify.Batch batch = slicer.slice(start, n);
+                start += n;
+                inFlight.add(new long[]{n, (long) n * children});
+                return batch;
+            }
+        };
+    }
+
+    /**
+     * Wraps the sink of a {@link ExpandAndClassify#runAll} call over this
+     * scheduler's batches, so each finished batch feeds the target.
+     */
+    public ExpandAndClassify.ResultSink measure(ExpandAndClassify.ResultSink sink) {
+        return new ExpandAndClassify.ResultSink() {
+            @Override
+            public void accept(ExpandAndClassify.Output output, LongBuffer boards) throws IOException {
+                sink.accept(output, boards);
+            }
+
+            @Override
+            public void endBatch() throws IOException {
+                sink.endBatch();
+                long now = System.nanoTime();
+                long[] batch = inFlight.poll();
+                // The first batch also carries the pipeline filling up, so timing starts after it
+                if (batch != null && lastBatchEnd != 0) record(batch[1], now - lastBatchEnd);
+                lastBatchEnd = now;
+            }
+        };
+    }
+
+    public String describe() {
+        return String.format("adaptive, %,d children per batch target, %d-%d ms window",
+                targetChildren, MIN_BATCH_NANOS / 1_000_000, MAX_BATCH_NANOS / 1_000_000);
+    }
+}
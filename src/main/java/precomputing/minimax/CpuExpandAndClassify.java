@@ -0,0 +1,201 @@
+package precomputing.minimax;
+
+import com.carrotsearch.hppc.LongArrayList;
+import game.Canonicalizer;
+import game.WinLines;
+
+import java.io.IOException;
+import java.lang.foreign.MemorySegment;
+import java.nio.LongBuffer;
+import java.util.Iterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * CPU implementation of the expand_and_classify kernel with the same
+ * {@link ExpandAndClassify.Result} contract, for machines without an OpenCL GPU.
+ * <p>
+ * The input is split into ranges on a ForkJoinPool. Every leaf task fills its
+ * own output lists and results are concatenated on join, so workers share no
+ * counters and never contend.
+ */
+public class CpuExpandAndClassify extends ExpandAndClassify {
+    private static final int LEAF_BOARDS = 4096;
+    private static final long CELL_MASK = 0x7FFFFFFL;
+    /** Report memory pressure when less than this share of the heap is free. */
+    private static final double MIN_FREE_HEAP = 0.25;
+
+    private final ForkJoinPool pool;
+
+    public CpuExpandAndClassify(int maxBoards) {
+        this(maxBoards, ForkJoinPool.commonPool());
+    }
+
+    public CpuExpandAndClassify(int maxBoards, ForkJoinPool pool) {
+        super(null, maxBoards, KernelVariant.ATOMIC);
+        this.pool = pool;
+    }
+
+    @Override
+    public Result run(LongArrayList inputBoards, int depth, SymmetryMode symmetry) {
+        return pool.invoke(new ExpandTask(inputBoards.buffer, 0, inputBoards.size(), depth, symmetry));
+    }
+
+    /**
+     * Expands the next batch on the pool while the sink consumes the previous one.
+     * Inputs alternate between two reused arrays: the one being filled was last
+     * read by the batch joined on the previous iteration.
+     */
+    @Override
+    public void runAll(Iterator<? extends Batch> batches, int depth, SymmetryMode symmetry,
+                       ResultSink sink) throws IOException {
+        long[][] inputs = {new long[0], new long[0]};
+        ForkJoinTask<Result> pending = null;
+        for (int i = 0; batches.hasNext(); i++) {
+            Batch batch = batches.next();
+            if (inputs[i & 1].length < batch.size()) inputs[i & 1] = new long[batch.size()];
+            long[] input = inputs[i & 1];
+            batch.copyTo(MemorySegment.ofArray(input));
+            ForkJoinTask<Result> next = pool.submit(new ExpandTask(input, 0, batch.size(), depth, symmetry));
+            if (pending != null) drain(pending.join(), sink);
+            pending = next;
+        }
+        if (pending != null) drain(pending.join(), sink);
+    }
+
+    private static void drain(Result result, ResultSink sink) throws IOException {
+        LongArrayList[] lists = {result.frontierChunks, result.termX, result.termO, result.termTie};
+        for (Output output : Output.values()) {
+            LongArrayList list = lists[output.ordinal()];
+            if (!list.isEmpty()) {
+                sink.accept(output, LongBuffer.wrap(list.buffer, 0, list.size()).asReadOnlyBuffer());
+            }
+        }
+        sink.endBatch();
+    }
+
+    /**
+     * Everything lives on the heap: two batches are in flight (one expanding,
+     * one draining), each with its input copy and its children, which exist
+     * twice while leaf lists are concatenated on join.
+     */
+    @Override
+    public long hostBytesPerBoard(int depth) {
+        return 2L * Long.BYTES * (1 + 2L * childrenPerBoard(depth));
+    }
+
+    /** The budget, but no more than the heap has free. */
+    @Override
+    public long hostBytesAvailable(long budgetBytes) {
+        Runtime rt = Runtime.getRuntime();
+        long freeHeap = rt.maxMemory() - (rt.totalMemory() - rt.freeMemory());
+        return Math.min(budgetBytes, freeHeap);
+    }
+
+    /** Past the budget, or short of free heap. */
+    @Override
+    public boolean overHostBudget(long budgetBytes) {
+        Runtime rt = Runtime.getRuntime();
+        long used = rt.totalMemory() - rt.freeMemory();
+        return used > budgetBytes || rt.maxMemory() - used < MIN_FREE_HEAP * rt.maxMemory();
+    }
+
+    /** There is no device; batches never touch device memory. */
+    @Override
+    public long deviceMemBytes() {
+        return Long.MAX_VALUE;
+    }
+
+    /** Heap is the only limit on the CPU; leave room for inputs and the frontier. */
+    @Override
+    public long maxAllocBytes() {
+        return Runtime.getRuntime().maxMemory() / 4;
+    }
+
+    @Override
+    public String describe() {
+        return "CPU (" + pool.getParallelism() + " threads)";
+    }
+
+    private static class ExpandTask extends RecursiveTask<Result> {
+        private final long[] boards;
+        private final int from, to, depth;
+        private final SymmetryMode symmetry;
+
+        ExpandTask(long[] boards, int from, int to, int depth, SymmetryMode symmetry) {
+            this.boards = boards;
+            this.from = from;
+            this.to = to;
+            this.depth = depth;
+            this.symmetry = symmetry;
+        }
+
+        @Override
+        protected Result compute() {
+            if (to - from > LEAF_BOARDS) {
+                int mid = (from + to) >>> 1;
+                ExpandTask left = new ExpandTask(boards, from, mid, depth, symmetry);
+                ExpandTask right = new ExpandTask(boards, mid, to, depth, symmetry);
+                right.fork();
+                Result a = left.compute();
+                Result b = right.join();
+                a.frontierChunks.addAll(b.frontierChunks);
+                a.termX.addAll(b.termX);
+                a.termO.addAll(b.termO);
+                a.termTie.addAll(b.termTie);
+                return a;
+            }
+
+            LongArrayList frontier = new LongArrayList((to - from) * Math.max(0, 27 - depth));
+            LongArrayList termX = new LongArrayList();
+            LongArrayList termO = new LongArrayList();
+            LongArrayList termTie = new LongArrayList();
+
+            boolean isXturn = (depth & 1) == 0;
+            for (int i = from; i < to; i++) {
+                long board = boards[i];
+                long xBits = board & CELL_MASK;
+                long oBits = (board >>> 27) & CELL_MASK;
+                long curr = isXturn ? xBits : oBits;
+                int currLines = WinLines.completed(curr);
+
+                long empty = ~(xBits | oBits) & CELL_MASK;
+                while (empty != 0) {
+                    int cell = Long.numberOfTrailingZeros(empty);
+                    empty &= empty - 1;
+
+                    long newCurr = curr | (1L << cell);
+                    long newX = isXturn ? newCurr : xBits;
+                    long newO = isXturn ? oBits : newCurr;
+                    long newBoard = emit(newX | (newO << 27), symmetry);
+
+                    // 1) two 3-in-a-rows → X-win or O-win
+                    if (currLines + WinLines.completedThrough(cell, newCurr) >= 2) {
+                        (isXturn ? termX : termO).add(newBoard);
+                    // 2) draw if full
+                    } else if ((newX | newO) == CELL_MASK) {
+                        termTie.add(newBoard);
+                    // 3) otherwise frontier
+                    } else {
+                        frontier.add(newBoard);
+                    }
+                }
+            }
+            return new Result(frontier, termX, termO, termTie);
+        }
+    }
+
+    /** Same emitted form as the kernel's symMode. */
+    static long emit(long board, SymmetryMode symmetry) {
+        switch (symmetry) {
+            case CANONICAL:
+                return Canonicalizer.canonical(board);
+            case CANONICAL_WITH_CLASS_SIZE:
+                return Canonicalizer.canonical(board)
+                        | ((long) Canonicalizer.classSize(board) << Canonicalizer.TAG_SHIFT);
+            default:
+                return board;
+        }
+    }
+}
@@ -1,15 +1,88 @@
 package precomputing.minimax;
 
 import com.carrotsearch.hppc.LongArrayList;
+import game.Board;
+import game.Canonicalizer;
+import support.CLBufferPool;
 import support.CLContext;
+import support.LongStore;
 import org.jocl.*;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
 import static org.jocl.CL.*;
 
 
 public class ExpandAndClassify {
     private final CLContext cl;
     private final int maxBoards;
+    private final KernelVariant variant;
+    private cl_kernel kernel;
+    private CLBufferPool pool;
+    private Slot[] slots;
+
+    /**
+     * How child boards are emitted. The canonical modes replace each child with
+     * its smallest image under the 48 cube symmetries, so symmetric positions
+     * collapse once the frontier is deduplicated. CANONICAL_WITH_CLASS_SIZE also
+     * packs the number of boards the canonical one stands for into bits 58-63,
+     * so weighted counts stay exact; see {@link #boardOf} and {@link #classSizeOf}.
+     */
+    public enum SymmetryMode {
+        NONE,
+        CANONICAL,
+        CANONICAL_WITH_CLASS_SIZE
+    }
+
+    /**
+     * Kernels in expand_and_classify.cl. All of them emit the same boards into
+     * the same four streams; they differ in how work is split and how output
+     * space is claimed.
+     */
+    public enum KernelVariant {
+        /** One work-item per (board, cell), one global atomic per child. */
+        ATOMIC("expand_and_classify"),
+        /**
+         * One work-item per (board, cell); each work-group ranks its children with
+         * a local prefix sum and claims space with one atomic per stream, so
+         * writes are coalesced and a group's children land contiguously in item
+         * order. Groups of {@link #LOCAL_SIZE} items do not align to a board's 27,
+         * so one board's children can be split across two groups' runs.
+         */
+        COMPACT("expand_and_classify_compact"),
+        /**
+         * One work-item per board, walking its empty cells. The mover's lines are
+         * counted once and each child checks only the lines through its cell;
+         * output space is claimed as in COMPACT.
+         */
+        PER_BOARD("expand_and_classify_per_board", 1);
+
+        final String function;
+        /** Work-items launched for each parent board. */
+        final int itemsPerBoard;
+
+        KernelVariant(String function) {
+            this(function, 27);
+        }
+
+        KernelVariant(String function, int itemsPerBoard) {
+            this.function = function;
+            this.itemsPerBoard = itemsPerBoard;
+        }
+    }
+
+    /** System property choosing the kernel: a {@link KernelVariant} name, ATOMIC by default. */
+    public static final String KERNEL_PROPERTY = "expander.kernel";
+
+    /** Work-group size of every launch; the compact and per-board kernels require exactly this (COMPACT_WG). */
+    static final int LOCAL_SIZE = 128;
 
     public static class Result {
         public final LongArrayList frontierChunks;
@@ -23,116 +96,455 @@ public class ExpandAndClassify {
     }
 
     public ExpandAndClassify(CLContext cl, int maxBoards) {
+        this(cl, maxBoards, KernelVariant.valueOf(System.getProperty(KERNEL_PROPERTY, "ATOMIC").toUpperCase()));
+    }
+
+    public ExpandAndClassify(CLContext cl, int maxBoards, KernelVariant variant) {
         this.cl = cl;
         this.maxBoards = maxBoards;
+        this.variant = variant;
+    }
+
+    /** System property choosing the backend: "gpu", "cpu" or "auto" (default). */
+    public static final String BACKEND_PROPERTY = "expander.backend";
+
+    /**
+     * Opens the backend selected by {@value #BACKEND_PROPERTY}. In "auto" mode an
+     * OpenCL GPU is used when one can be initialised, otherwise the CPU backend.
+     *
+     * @param kernelResourcePath kernel source on the classpath, as for {@link CLContext}
+     */
+    public static ExpandAndClassify open(String kernelResourcePath) throws IOException {
+        String backend = System.getProperty(BACKEND_PROPERTY, "auto").toLowerCase();
+        if (!backend.equals("cpu")) {
+            try {
+                CLContext cl = new CLContext(kernelResourcePath);
+                // Outputs are staged in direct buffers, which are int-indexed by byte.
+                int maxBoards = (int) Math.min(Integer.MAX_VALUE / Sizeof.cl_ulong, cl.maxAllocBytes / Sizeof.cl_ulong);
+                return new ExpandAndClassify(cl, maxBoards);
+            } catch (IOException | RuntimeException | LinkageError e) {
+                if (backend.equals("gpu")) throw e;
+                System.out.println("Warning: OpenCL unavailable (" + e + "), using CPU expander");
+            }
+        }
+        return new CpuExpandAndClassify(Integer.MAX_VALUE);
+    }
+
+    /** Pinned host staging the backend holds, idle or in use, for checking against a host budget. */
+    public long pinnedBytes() {
+        return pool == null ? 0 : pool.pinnedBytes();
+    }
+
+    /** Host bytes one parent ties up while its batch is in flight: pinned staging for it and its children in each slot. */
+    public long hostBytesPerBoard(int depth) {
+        return (long) Long.BYTES * (1 + childrenPerBoard(depth)) * PIPELINE_SLOTS;
+    }
+
+    /** Host memory batches may take under {@code budgetBytes}; staging is pinned, so all of it. */
+    public long hostBytesAvailable(long budgetBytes) {
+        return budgetBytes;
+    }
+
+    /** Whether the host memory held for batches has outgrown {@code budgetBytes}. */
+    public boolean overHostBudget(long budgetBytes) {
+        return pinnedBytes() > budgetBytes;
+    }
+
+    /** Device memory the pipeline's buffers have to share. */
+    public long deviceMemBytes() {
+        return cl.totalMemBytes;
+    }
+
+    /**
+     * Device memory one pipeline slot holds for a batch of {@code boards} parents
+     * holding {@code depth} stones: the input, one buffer and one counter per
+     * output stream, each rounded up to the pool's size class.
+     */
+    static long deviceBytesPerSlot(long boards, int depth) {
+        int outputs = Output.values().length;
+        long in = CLBufferPool.sizeClass(boards * Sizeof.cl_ulong, Long.MAX_VALUE);
+        long out = CLBufferPool.sizeClass(boards * childrenPerBoard(depth) * Sizeof.cl_ulong, Long.MAX_VALUE);
+        return in + outputs * (out + CLBufferPool.sizeClass(Sizeof.cl_ulong, Long.MAX_VALUE));
+    }
+
+    /** Largest single buffer the backend can hold, used to size batches. */
+    public long maxAllocBytes() {
+        return cl.maxAllocBytes;
+    }
+
+    /** Largest batch whose children always fit one output buffer. */
+    public int maxBatchBoards() {
+        return maxBatchBoards(0);
+    }
+
+    /** Largest batch of parents holding {@code depth} stones whose children fit one output buffer. */
+    public int maxBatchBoards(int depth) {
+        return maxBoards / childrenPerBoard(depth);
+    }
+
+    /** Empty cells, and so children, of a board holding {@code depth} stones (at least 1, to size buffers). */
+    static int childrenPerBoard(int depth) {
+        return Math.max(1, Board.CELLS - depth);
+    }
+
+    public String describe() {
+        return "OpenCL, " + variant.name().toLowerCase() + " kernel";
+    }
+
+    /** Strips a class-size tag, if any. */
+    public static long boardOf(long emitted) {
+        return emitted & Canonicalizer.BOARD_MASK;
+    }
+
+    /** Number of raw boards an emitted board represents (1 when untagged). */
+    public static int classSizeOf(long emitted) {
+        int size = (int) (emitted >>> Canonicalizer.TAG_SHIFT);
+        return size == 0 ? 1 : size;
+    }
+
+    /** Sum of {@link #classSizeOf} over a list of emitted boards. */
+    public static long weightedCount(LongArrayList boards) {
+        long total = 0;
+        for (int i = 0; i < boards.size(); i++) {
+            total += classSizeOf(boards.get(i));
+        }
+        return total;
     }
 
     public Result run(LongArrayList inputBoards, int depth) {
-        int inCount = inputBoards.size();
-        int totalThds = inCount * 27;
-        int maxOut = inCount * 27;
-
-        // 1) Allocate device buffers
-        cl_mem bufIn  = clCreateBuffer(cl.ctx,
-                CL_MEM_READ_ONLY | CL_MEM_COPY_HOST_PTR,
-                Sizeof.cl_ulong * inCount,
-                Pointer.to(inputBoards.buffer), null);
-
-        cl_mem bufFr  = clCreateBuffer(cl.ctx,
-                CL_MEM_READ_WRITE,
-                Sizeof.cl_ulong * maxOut, null, null);
-
-        cl_mem bufTX  = clCreateBuffer(cl.ctx,
-                CL_MEM_READ_WRITE,
-                Sizeof.cl_ulong * maxOut, null, null);
-
-        cl_mem bufTO  = clCreateBuffer(cl.ctx,
-                CL_MEM_READ_WRITE,
-                Sizeof.cl_ulong * maxOut, null, null);
-
-        cl_mem bufTT  = clCreateBuffer(cl.ctx,
-                CL_MEM_READ_WRITE,
-                Sizeof.cl_ulong * maxOut, null, null);
-
-        // atomic counters
-        cl_mem ctrF = clCreateBuffer(cl.ctx, CL_MEM_READ_WRITE, Sizeof.cl_ulong, null, null);
-        cl_mem ctrX = clCreateBuffer(cl.ctx, CL_MEM_READ_WRITE, Sizeof.cl_ulong, null, null);
-        cl_mem ctrO = clCreateBuffer(cl.ctx, CL_MEM_READ_WRITE, Sizeof.cl_ulong, null, null);
-        cl_mem ctrT = clCreateBuffer(cl.ctx, CL_MEM_READ_WRITE, Sizeof.cl_ulong, null, null);
-
-        // zero them
-        clEnqueueFillBuffer(cl.queue, ctrF, Pointer.to(new long[]{0L}),
-                Sizeof.cl_ulong, 0, Sizeof.cl_ulong, 0, null, null);
-        clEnqueueFillBuffer(cl.queue, ctrX, Pointer.to(new long[]{0L}),
-                Sizeof.cl_ulong, 0, Sizeof.cl_ulong, 0, null, null);
-        clEnqueueFillBuffer(cl.queue, ctrO, Pointer.to(new long[]{0L}),
-                Sizeof.cl_ulong, 0, Sizeof.cl_ulong, 0, null, null);
-        clEnqueueFillBuffer(cl.queue, ctrT, Pointer.to(new long[]{0L}),
-                Sizeof.cl_ulong, 0, Sizeof.cl_ulong, 0, null, null);
-
-        // 2) Set kernel args
-        cl_kernel k = cl.kernel;
-        int ai = 0;
-        clSetKernelArg(k, ai++, Sizeof.cl_mem, Pointer.to(bufIn));
-        clSetKernelArg(k, ai++, Sizeof.cl_uint, Pointer.to(new int[]{inCount}));
-        clSetKernelArg(k, ai++, Sizeof.cl_uint, Pointer.to(new int[]{depth}));
-        clSetKernelArg(k, ai++, Sizeof.cl_mem, Pointer.to(bufFr));
-        clSetKernelArg(k, ai++, Sizeof.cl_mem, Pointer.to(ctrF));
-        clSetKernelArg(k, ai++, Sizeof.cl_mem, Pointer.to(bufTX));
-        clSetKernelArg(k, ai++, Sizeof.cl_mem, Pointer.to(ctrX));
-        clSetKernelArg(k, ai++, Sizeof.cl_mem, Pointer.to(bufTO));
-        clSetKernelArg(k, ai++, Sizeof.cl_mem, Pointer.to(ctrO));
-        clSetKernelArg(k, ai++, Sizeof.cl_mem, Pointer.to(bufTT));
-        clSetKernelArg(k, ai++, Sizeof.cl_mem, Pointer.to(ctrT));
-
-        // 3) Launch
-        long localSize  = 128;
-        long globalSize = ((totalThds + localSize - 1) / localSize) * localSize;
-        clEnqueueNDRangeKernel(cl.queue, k, 1, null,
-                new long[]{globalSize}, new long[]{localSize},
-                0, null, null);
-
-        // 4) Read back counts
-        long[] cntF = new long[1], cntX = new long[1], cntO = new long[1], cntT = new long[1];
-        clEnqueueReadBuffer(cl.queue, ctrF, CL_TRUE, 0, Sizeof.cl_ulong, Pointer.to(cntF), 0, null, null);
-        clEnqueueReadBuffer(cl.queue, ctrX, CL_TRUE, 0, Sizeof.cl_ulong, Pointer.to(cntX), 0, null, null);
-        clEnqueueReadBuffer(cl.queue, ctrO, CL_TRUE, 0, Sizeof.cl_ulong, Pointer.to(cntO), 0, null, null);
-        clEnqueueReadBuffer(cl.queue, ctrT, CL_TRUE, 0, Sizeof.cl_ulong, Pointer.to(cntT), 0, null, null);
-
-        // 5) Read back terminal arrays
-        LongArrayList termX  = new LongArrayList((int)cntX[0]);
-        LongArrayList termTie= new LongArrayList((int)cntT[0]);
-        LongArrayList termO  = new LongArrayList((int)cntO[0]);
-        if (termX.size()  > 0)
-            clEnqueueReadBuffer(cl.queue, bufTX, CL_TRUE, 0,
-                    termX.size() * Sizeof.cl_ulong, Pointer.to(termX.buffer), 0, null, null);
-        if (termO.size()  > 0)
-            clEnqueueReadBuffer(cl.queue, bufTO, CL_TRUE, 0,
-                    termO.size() * Sizeof.cl_ulong, Pointer.to(termO.buffer), 0, null, null);
-        if (termTie.size()> 0)
-            clEnqueueReadBuffer(cl.queue, bufTT, CL_TRUE, 0,
-                    termTie.size() * Sizeof.cl_ulong, Pointer.to(termTie.buffer), 0, null, null);
-
-        // 6) Read frontier in <= maxBoards chunks
-        LongArrayList frontierChunks = new LongArrayList();
-        long rem = cntF[0], off = 0;
-        while (rem > 0) {
-            int chunkSize = (int)Math.min(maxBoards, rem);
-            LongArrayList chunk = new LongArrayList(chunkSize);
-            clEnqueueReadBuffer(cl.queue, bufFr, CL_TRUE,
-                    off * Sizeof.cl_ulong,
-                    chunkSize * Sizeof.cl_ulong,
-                    Pointer.to(chunk.buffer), 0, null, null);
-            frontierChunks.add(chunk.buffer);
-            off += chunkSize;
-            rem -= chunkSize;
-        }
-
-        // 7) Clean up
-        for (cl_mem m : new cl_mem[]{bufIn, bufFr, bufTX, bufTO, bufTT, ctrF, ctrX, ctrO, ctrT}) {
-            clReleaseMemObject(m);
-        }
-
-        return new Result(frontierChunks, termX, termO, termTie);
+        return run(inputBoards, depth, SymmetryMode.NONE);
+    }
+
+    /**
+     * @param depth stones on every input board; it decides the side to move and
+     *              sizes the output buffers to the 27 - depth children per board
+     */
+    public Result run(LongArrayList inputBoards, int depth, SymmetryMode symmetry) {
+        Slot slot = slots()[0];
+        CollectingSink sink = new CollectingSink();
+        try {
+            slot.submit(Batch.of(inputBoards, 0, inputBoards.size()), depth, symmetry);
+            slot.requestCounts();
+            slot.enqueueReads();
+            slot.finish(sink);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // CollectingSink never throws
+        } finally {
+            slot.abort();
+        }
+        return sink.result();
+    }
+
+    /** The four output streams of the kernel. */
+    public enum Output { FRONTIER, X_WINS, O_WINS, TIES }
+
+    /**
+     * Receives expansion output as it comes off the device. Each call hands over
+     * one non-empty output stream of one batch as a read-only view of the staging
+     * memory. The view is only valid during the call, so a sink writes it out or
+     * copies what it keeps before returning. Batches arrive in order and each one
+     * ends with {@link #endBatch}.
+     */
+    public interface ResultSink {
+        void accept(Output output, LongBuffer boards) throws IOException;
+
+        default void endBatch() throws IOException {
+        }
+    }
+
+    /**
+     * Parents for one {@link #runAll} batch. A backend copies them straight into
+     * its own staging, so a batch can be a view of a frontier instead of a copy.
+     */
+    public interface Batch {
+        int size();
+
+        /** Copies the boards to the start of {@code dst} as native-order longs. */
+        void copyTo(MemorySegment dst);
+
+        /** A view of {@code n} boards of {@code boards} from {@code from}. */
+        static Batch of(LongArrayList boards, int from, int n) {
+            return new Batch() {
+                @Override
+                public int size() {
+                    return n;
+                }
+
+                @Override
+                public void copyTo(MemorySegment dst) {
+                    MemorySegment.copy(boards.buffer, from, dst, ValueLayout.JAVA_LONG_UNALIGNED, 0, n);
+                }
+            };
+        }
+
+        /** A view of {@code n} boards of an off-heap store from {@code from}, valid until the store grows. */
+        static Batch of(LongStore boards, long from, int n) {
+            return new Batch() {
+                @Override
+                public int size() {
+                    return n;
+                }
+
+                @Override
+                public void copyTo(MemorySegment dst) {
+                    MemorySegment.copy(boards.slice(from, n), 0, dst, 0, (long) n * Long.BYTES);
+                }
+            };
+        }
+    }
+
+    /** Copies every stream into lists, for callers that want a whole {@link Result}. */
+    static class CollectingSink implements ResultSink {
+        private final LongArrayList[] lists = new LongArrayList[Output.values().length];
+
+        CollectingSink() {
+            for (int i = 0; i < lists.length; i++) lists[i] = new LongArrayList();
+        }
+
+        @Override
+        public void accept(Output output, LongBuffer boards) {
+            LongArrayList list = lists[output.ordinal()];
+            int n = boards.remaining();
+            list.ensureCapacity(list.size() + n);
+            boards.get(list.buffer, list.size(), n);
+            list.elementsCount += n;
+        }
+
+        Result result() {
+            return new Result(lists[0], lists[1], lists[2], lists[3]);
+        }
+    }
+
+    /** Batches in flight in {@link #runAll}: one uploading and running, one reading back, one being consumed. */
+    public static final int PIPELINE_SLOTS = 3;
+
+    /**
+     * Expands a sequence of batches with uploads, kernels and readback overlapped.
+     * <p>
+     * While batch N runs on the compute queue, batch N+1 is uploaded on the upload
+     * queue and the outputs of batch N-1 are read back without blocking on the
+     * read queue; meanwhile the sink consumes batch N-2 on this thread. Stages
+     * are chained with {@code cl_event} wait lists, and the host only blocks for a
+     * batch's counters (to size its reads) and before handing its output over.
+     */
+    public void runAll(Iterator<? extends Batch> batches, int depth, SymmetryMode symmetry,
+                       ResultSink sink) throws IOException {
+        Slot[] slots = slots();
+        try {
+            int n = 0;
+            while (batches.hasNext()) {
+                Slot slot = slots[n % PIPELINE_SLOTS];
+                slot.submit(batches.next(), depth, symmetry);
+                if (n >= 1) slots[(n - 1) % PIPELINE_SLOTS].enqueueReads();
+                slot.requestCounts();
+                if (n >= 2) slots[(n - 2) % PIPELINE_SLOTS].finish(sink);
+                n++;
+            }
+            if (n >= 1) slots[(n - 1) % PIPELINE_SLOTS].enqueueReads();
+            if (n >= 2) slots[(n - 2) % PIPELINE_SLOTS].finish(sink);
+            if (n >= 1) slots[(n - 1) % PIPELINE_SLOTS].finish(sink);
+        } finally {
+            for (Slot slot : slots) slot.abort();
+        }
+    }
+
+    /** Frees the pooled device and pinned host buffers. */
+    public void close() {
+        if (pool != null) {
+            System.out.printf("Buffer pool: %,d buffers created, %,d reused%n",
+                    pool.createdCount(), pool.reusedCount());
+            pool.close();
+            pool = null;
+            slots = null;
+        }
+    }
+
+    /** Slots and their pool live as long as the expander, so buffers are reused across calls and depths. */
+    private Slot[] slots() {
+        if (slots == null) {
+            pool = new CLBufferPool(cl);
+            slots = new Slot[PIPELINE_SLOTS];
+            for (int i = 0; i < slots.length; i++) slots[i] = new Slot();
+        }
+        return slots;
+    }
+
+    /** Consecutive slices of {@code boards} for {@link #runAll}. */
+    public static Iterator<Batch> batches(LongArrayList boards, int batchSize) {
+        return new Iterator<>() {
+            private int start = 0;
+
+            @Override
+            public boolean hasNext() {
+                return start < boards.size();
+            }
+
+            @Override
+            public Batch next() {
+                int end = Math.min(start + batchSize, boards.size());
+                Batch batch = Batch.of(boards, start, end - start);
+                start = end;
+                return batch;
+            }
+        };
+    }
+
+    /**
+     * One in-flight batch. Device buffers and pinned staging are taken from the
+     * pool per batch and returned once the output is handed out; the input is
+     * copied from its source straight into pinned memory, and results are read back into pinned
+     * memory (which JOCL also requires for non-blocking transfers) and passed to
+     * the sink from there without another copy.
+     */
+    private class Slot {
+        private static final int OUTPUTS = 4; // frontier, X wins, O wins, ties
+
+        private cl_mem in;
+        private final cl_mem[] out = new cl_mem[OUTPUTS];
+        private final cl_mem[] counters = new cl_mem[OUTPUTS];
+
+        private CLBufferPool.Pinned inStage;
+        private CLBufferPool.Pinned countStage;
+        private final CLBufferPool.Pinned[] outStage = new CLBufferPool.Pinned[OUTPUTS];
+        private final long[] counts = new long[OUTPUTS];
+
+        private int inCount;
+        private cl_event kernelDone;
+        private cl_event countsRead;
+        private final List<cl_event> events = new ArrayList<>();
+        private final List<cl_event> reads = new ArrayList<>();
+
+        /** Uploads the batch and launches the kernel once the upload and counter resets are done. */
+        void submit(Batch boards, int depth, SymmetryMode symmetry) {
+            inCount = boards.size();
+            if (inCount == 0) return;
+            // Every parent holds depth stones, so it has exactly 27 - depth children to emit
+            int children = childrenPerBoard(depth);
+            if ((long) inCount * children > maxBoards)
+                throw new IllegalArgumentException("Batch of " + inCount + " boards can emit more than "
+                        + maxBoards + " children per output");
+
+            long inBytes = (long) inCount * Sizeof.cl_ulong;
+            long outBytes = inBytes * children;
+            in = pool.acquire(inBytes);
+            for (int o = 0; o < OUTPUTS; o++) {
+                out[o] = pool.acquire(outBytes);
+                counters[o] = pool.acquire(Sizeof.cl_ulong);
+            }
+            inStage = pool.acquirePinned(inBytes);
+            countStage = pool.acquirePinned(OUTPUTS * Sizeof.cl_ulong);
+
+            boards.copyTo(MemorySegment.ofBuffer(inStage.host));
+            cl_event upload = event();
+            clEnqueueWriteBuffer(cl.uploadQueue, in, CL_FALSE, 0, inBytes,
+                    Pointer.to(inStage.host), 0, null, upload);
+            // The upload queue is in order, so the last reset also covers the upload.
+            cl_event staged = null;
+            for (cl_mem ctr : counters) {
+                staged = event();
+                clEnqueueFillBuffer(cl.uploadQueue, ctr, Pointer.to(new long[]{0L}),
+                        Sizeof.cl_ulong, 0, Sizeof.cl_ulong, 0, null, staged);
+            }
+
+            if (kernel == null) kernel = cl.createKernel(variant.function);
+            cl_kernel k = kernel;
+            int ai = 0;
+            clSetKernelArg(k, ai++, Sizeof.cl_mem, Pointer.to(in));
+            clSetKernelArg(k, ai++, Sizeof.cl_uint, Pointer.to(new int[]{inCount}));
+            clSetKernelArg(k, ai++, Sizeof.cl_uint, Pointer.to(new int[]{depth}));
+            for (int o = 0; o < OUTPUTS; o++) {
+                clSetKernelArg(k, ai++, Sizeof.cl_mem, Pointer.to(out[o]));
+                clSetKernelArg(k, ai++, Sizeof.cl_mem, Pointer.to(counters[o]));
+            }
+            clSetKernelArg(k, ai++, Sizeof.cl_uint, Pointer.to(new int[]{symmetry.ordinal()}));
+            clSetKernelArg(k, ai++, Sizeof.cl_mem, Pointer.to(cl.symTables));
+
+            long localSize  = LOCAL_SIZE;
+            long totalThds  = (long) inCount * variant.itemsPerBoard;
+            long globalSize = ((totalThds + localSize - 1) / localSize) * localSize;
+            kernelDone = event();
+            clEnqueueNDRangeKernel(cl.queue, k, 1, null,
+                    new long[]{globalSize}, new long[]{localSize},
+                    1, new cl_event[]{staged}, kernelDone);
+        }
+
+        /** Queues the counter readback behind the kernel. */
+        void requestCounts() {
+            if (inCount == 0) return;
+            for (int o = 0; o < OUTPUTS; o++) {
+                countsRead = event();
+                clEnqueueReadBuffer(cl.readQueue, counters[o], CL_FALSE, 0, Sizeof.cl_ulong,
+                        Pointer.to(countStage.host).withByteOffset((long) o * Sizeof.cl_ulong),
+                        1, new cl_event[]{kernelDone}, countsRead);
+            }
+        }
+
+        /** Waits for the counters, then queues non-blocking reads of exactly the boards written. */
+        void enqueueReads() {
+            if (inCount == 0) return;
+            clWaitForEvents(1, new cl_event[]{countsRead});
+            for (int o = 0; o < OUTPUTS; o++) {
+                counts[o] = countStage.host.getLong(o * Sizeof.cl_ulong);
+                if (counts[o] == 0) continue;
+                long bytes = counts[o] * Sizeof.cl_ulong;
+                outStage[o] = pool.acquirePinned(bytes);
+                cl_event read = event();
+                clEnqueueReadBuffer(cl.readQueue, out[o], CL_FALSE, 0, bytes,
+                        Pointer.to(outStage[o].host), 0, null, read);
+                reads.add(read);
+            }
+        }
+
+        /** Waits for the reads, hands the staged boards to the sink and returns the buffers to the pool. */
+        void finish(ResultSink sink) throws IOException {
+            try {
+                if (!reads.isEmpty()) clWaitForEvents(reads.size(), reads.toArray(new cl_event[0]));
+                for (int o = 0; o < OUTPUTS && inCount > 0; o++) {
+                    if (counts[o] == 0) continue;
+                    LongBuffer view = outStage[o].host.asLongBuffer();
+                    view.limit((int) counts[o]);
+                    sink.accept(Output.values()[o], view.asReadOnlyBuffer());
+                }
+                sink.endBatch();
+            } finally {
+                recycle();
+            }
+        }
+
+        /** Waits for anything still queued (after a failure) and returns the buffers to the pool. */
+        void abort() {
+            if (!events.isEmpty()) clWaitForEvents(events.size(), events.toArray(new cl_event[0]));
+            recycle();
+        }
+
+        private cl_event event() {
+            cl_event e = new cl_event();
+            events.add(e);
+            return e;
+        }
+
+        private void recycle() {
+            for (cl_event e : events) clReleaseEvent(e);
+            events.clear();
+            reads.clear();
+            kernelDone = null;
+            countsRead = null;
+            inCount = 0;
+
+            if (in != null) pool.release(in);
+            in = null;
+            for (int o = 0; o < OUTPUTS; o++) {
+                if (out[o] != null) pool.release(out[o]);
+                if (counters[o] != null) pool.release(counters[o]);
+                if (outStage[o] != null) pool.release(outStage[o]);
+                out[o] = null;
+                counters[o] = null;
+                outStage[o] = null;
+            }
+            if (inStage != null) pool.release(inStage);
+            if (countStage != null) pool.release(countStage);
+            inStage = null;
+            countStage = null;
+        }
     }
 }
@@ -0,0 +1,212 @@
+package precomputing.minimax;
+
+import com.carrotsearch.hppc.LongArrayList;
+
+import java.io.*;
+import java.nio.LongBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * External sort + unique over the boards emitted for one depth.
+ * <p>
+ * The same set of stones is reached through many move orders, and without
+ * merging each copy is stored and expanded again. Boards are buffered into a
+ * fixed-size run, which is sorted, collapsed to (board, count) pairs and spilled
+ * to disk when full. {@link #finish} k-way merges the runs into a single sorted
+ * file of distinct boards (raw big-endian longs, the same layout Main maps), with
+ * an optional parallel file of long emission counts: how many times each board was
+ * added. For a deduplicated parent frontier that is the number of distinct parents,
+ * not the number of paths; {@link PathCounts} derives those.
+ */
+public class FrontierDeduplicator implements Closeable {
+    private static final int IO_BUFFER_BYTES = 1 << 16;
+
+    private final Path tempDir;
+    private final long[] run;
+    private int runSize;
+    private final List<Path> runFiles = new ArrayList<>();
+    private long added;
+
+    /**
+     * @param tempDir     where sorted runs are spilled
+     * @param runCapacity boards held in memory before a run is spilled
+     */
+    public FrontierDeduplicator(Path tempDir, int runCapacity) throws IOException {
+        this.tempDir = tempDir;
+        this.run = new long[runCapacity];
+        Files.createDirectories(tempDir);
+    }
+
+    public void add(long board) throws IOException {
+        if (runSize == run.length) spillRun();
+        run[runSize++] = board;
+        added++;
+    }
+
+    public void add(long[] boards, int offset, int length) throws IOException {
+        while (length > 0) {
+            if (runSize == run.length) spillRun();
+            int n = Math.min(length, run.length - runSize);
+            System.arraycopy(boards, offset, run, runSize, n);
+            runSize += n;
+            offset += n;
+            length -= n;
+            added += n;
+        }
+    }
+
+    public void add(LongArrayList boards) throws IOException {
+        add(boards.buffer, 0, boards.size());
+    }
+
+    /** Consumes the remaining boards of {@code boards} with bulk copies. */
+    public void add(LongBuffer boards) throws IOException {
+        while (boards.hasRemaining()) {
+            if (runSize == run.length) spillRun();
+            int n = Math.min(boards.remaining(), run.length - runSize);
+            boards.get(run, runSize, n);
+            runSize += n;
+            added += n;
+        }
+    }
+
+    /** Boards passed to {@code add}, duplicates included. */
+    public long addedCount() {
+        return added;
+    }
+
+    /**
+     * Merges everything added so far into {@code out}.
+     *
+     * @param countsOut file for the per-board emission counts, or null to skip them
+     * @return the number of distinct boards written
+     */
+    public long finish(Path out, Path countsOut) throws IOException {
+        long[] counts = new long[runSize];
+        int unique = sortUnique(run, runSize, counts);
+        runSize = 0;
+
+        try (DataOutputStream boardsOut = open(out);
+             DataOutputStream multOut = countsOut == null ? null : open(countsOut)) {
+
+            if (runFiles.isEmpty()) {
+                for (int i = 0; i < unique; i++) {
+                    boardsOut.writeLong(run[i]);
+                    if (multOut != null) multOut.writeLong(counts[i]);
+                }
+                return unique;
+            }
+
+            if (unique > 0) runFiles.add(writeRun(run, counts, unique));
+            return merge(boardsOut, multOut);
+        } finally {
+            deleteRuns();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        deleteRuns();
+    }
+
+    private long merge(DataOutputStream boardsOut, DataOutputStream multOut) throws IOException {
+        PriorityQueue<RunReader> heap = new PriorityQueue<>((a, b) -> Long.compare(a.board, b.board));
+        List<RunReader> readers = new ArrayList<>();
+        try {
+            for (Path p : runFiles) {
+                RunReader r = new RunReader(p);
+                readers.add(r);
+                if (r.advance()) heap.add(r);
+            }
+
+            long distinct = 0;
+            while (!heap.isEmpty()) {
+                RunReader r = heap.poll();
+                long board = r.board;
+                long count = r.count;
+                if (r.advance()) heap.add(r);
+                while (!heap.isEmpty() && heap.peek().board == board) {
+                    RunReader same = heap.poll();
+                    count += same.count;
+                    if (same.advance()) heap.add(same);
+                }
+                boardsOut.writeLong(board);
+                if (multOut != null) multOut.writeLong(count);
+                distinct++;
+            }
+            return distinct;
+        } finally {
+            for (RunReader r : readers) r.in.close();
+        }
+    }
+
+    private void spillRun() throws IOException {
+        long[] counts = new long[runSize];
+        int unique = sortUnique(run, runSize, counts);
+        runFiles.add(writeRun(run, counts, unique));
+        runSize = 0;
+    }
+
+    /** Sorts {@code boards[0..n)} in place, collapses duplicates and returns the unique count. */
+    private static int sortUnique(long[] boards, int n, long[] counts) {
+        Arrays.sort(boards, 0, n);
+        int unique = 0;
+        for (int i = 0; i < n; i++) {
+            if (unique > 0 && boards[unique - 1] == boards[i]) {
+                counts[unique - 1]++;
+            } else {
+                boards[unique] = boards[i];
+                counts[unique] = 1;
+                unique++;
+            }
+        }
+        return unique;
+    }
+
+    private Path writeRun(long[] boards, long[] counts, int n) throws IOException {
+        Path file = Files.createTempFile(tempDir, "dedup_run_", ".dat");
+        try (DataOutputStream dos = open(file)) {
+            for (int i = 0; i < n; i++) {
+                dos.writeLong(boards[i]);
+                dos.writeLong(counts[i]);
+            }
+        }
+        return file;
+    }
+
+    private void deleteRuns() throws IOException {
+        for (Path p : runFiles) Files.deleteIfExists(p);
+        runFiles.clear();
+    }
+
+    private static DataOutputStream open(Path file) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(file.toFile()), IO_BUFFER_BYTES));
+    }
+
+    private static class RunReader {
+        final DataInputStream in;
+        long board;
+        long count;
+
+        RunReader(Path file) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(
+                    new FileInputStream(file.toFile()), IO_BUFFER_BYTES));
+        }
+
+        boolean advance() throws IOException {
+            try {
+                board = in.readLong();
+                count = in.readLong();
+                return true;
+            } catch (EOFException e) {
+                return false;
+            }
+        }
+    }
+}
@@ -2,44 +2,46 @@ package precomputing.minimax;
 
 import com.carrotsearch.hppc.LongArrayList;
 import com.carrotsearch.hppc.cursors.LongCursor;
-import support.CLContext;
+import support.LongStore;
+import support.MappedLongFile;
 
 import java.io.*;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.*;
 import java.util.*;
 
 public class GPUTimer {
     private static final int MAX_DEPTH = 27;
-    private static final long RAM_BUDGET_BYTES = 40L * 1024 * 1024 * 1024; // 40 GB
-    private static final int EXPANSION_FACTOR = 27;
     private static final int MAX_FRONTIER_SIZE = 50_000_000; // Max boards in memory frontier
     private static final int FRONTIER_SPLIT_THRESHOLD = 30_000_000; // When to start splitting
     private static final String TEMP_DIR = "temp_frontiers";
-    private static final String OUTPUT_DIR = "C:\\Users\\webbometric\\Documents\\GitHub\\3DTicTacToe\\src\\main\\resources\\MiniMax";
+    static final String OUTPUT_DIR = "C:\\Users\\webbometric\\Documents\\GitHub\\3DTicTacToe\\src\\main\\resources\\MiniMax";
+    static final int DEDUP_RUN_BOARDS = FRONTIER_SPLIT_THRESHOLD / 2; // boards per sorted run
+    // Emit canonical boards tagged with their symmetry class size (up to 48x fewer boards)
+    static final ExpandAndClassify.SymmetryMode SYMMETRY = ExpandAndClassify.SymmetryMode.CANONICAL_WITH_CLASS_SIZE;
+    // Write frontier_depthN_counts.dat (paths reaching each board) next to each frontier; raw boards only
+    private static final boolean KEEP_PATH_COUNTS = SYMMETRY == ExpandAndClassify.SymmetryMode.NONE;
 
-    private final CLContext clContext;
     private final ExpandAndClassify expander;
-    private final int maxBoardsPerBatch;
+    private final BatchScheduler scheduler;
+    private final ByteBuffer writeScratch = ByteBuffer.allocateDirect(1 << 20); // big-endian, like DataOutputStream
 
     // Statistics
     private long totalBoardsGenerated = 0;
     private long totalTerminalBoards = 0;
+    private long totalDuplicatesMerged = 0;
     private long totalGPUTime = 0;
     private long totalDepthTime = 0;
 
     public GPUTimer() throws IOException {
-        this.clContext = new CLContext("cl/expand_and_classify.cl");
+        this.expander = ExpandAndClassify.open("cl/expand_and_classify.cl");
 
-        // Calculate safe batch size based on GPU memory constraints
-        long gpuMemoryBytes = clContext.maxAllocBytes;
-        long memoryPerBoard = Long.BYTES;
-        long memoryMultiplier = 1 + (4 * EXPANSION_FACTOR); // input + 4 output buffers
-
-        int gpuLimitedBatch = (int) (gpuMemoryBytes / (memoryPerBoard * memoryMultiplier));
-        int ramLimitedBatch = (int) (RAM_BUDGET_BYTES / (memoryPerBoard * EXPANSION_FACTOR));
-
-        this.maxBoardsPerBatch = Math.min(gpuLimitedBatch, ramLimitedBatch);
-        this.expander = new ExpandAndClassify(clContext, maxBoardsPerBatch);
+        // Batches are sized per depth from empty cells, device and host memory, and measured batch times
+        this.scheduler = new BatchScheduler(expander, Main.BATCH_BUDGET_BYTES);
 
         // Create temp directory for frontier files
         Files.createDirectories(Paths.get(TEMP_DIR));
@@ -47,261 +49,183 @@ public class GPUTimer {
         Files.createDirectories(Paths.get(OUTPUT_DIR));
 
         System.out.println("=== GPU Timer - Board Generation Performance Test ===");
-        System.out.printf("GPU Memory Limit: %,d boards/batch%n", gpuLimitedBatch);
-        System.out.printf("RAM Budget Limit: %,d boards/batch%n", ramLimitedBatch);
-        System.out.printf("Batch Size: %,d boards%n", maxBoardsPerBatch);
+        System.out.printf("Batch Limit: %,d boards at depth 0, %,d at depth %d%n",
+            scheduler.limit(0), scheduler.limit(MAX_DEPTH - 1), MAX_DEPTH - 1);
+        System.out.printf("Batch Sizing: %s%n", scheduler.describe());
         System.out.printf("Max Frontier Size: %,d boards%n", MAX_FRONTIER_SIZE);
-        System.out.printf("GPU Max Alloc: %.2f MB%n", clContext.maxAllocBytes / (1024.0 * 1024.0));
+        System.out.printf("Expander: %s%n", expander.describe());
+        System.out.printf("GPU Max Alloc: %.2f MB%n", expander.maxAllocBytes() / (1024.0 * 1024.0));
         System.out.printf("Output Directory: %s%n", OUTPUT_DIR);
+        System.out.printf("Symmetry Mode: %s%n", SYMMETRY);
         System.out.println();
     }
 
-    // Multi-frontier management
+    // Frontier management: one off-heap store per depth that spills to a mapped file past MAX_FRONTIER_SIZE
     private static class MultiFrontier {
-        private final List<LongArrayList> memoryFrontiers;
-        private final List<String> diskFrontiers;
-        private final Set<String> processedFiles; // Track files that have been fully consumed
-        private long totalSize;
-
-        public MultiFrontier() {
-            this.memoryFrontiers = new ArrayList<>();
-            this.diskFrontiers = new ArrayList<>();
-            this.processedFiles = new HashSet<>();
-            this.totalSize = 0;
-        }
+        private final LongStore boards = new LongStore(Paths.get(TEMP_DIR), (long) MAX_FRONTIER_SIZE * Long.BYTES);
 
-        public void addBoards(LongArrayList boards) throws IOException {
-            if (boards.isEmpty()) return;
-
-            // If we can fit in current memory frontier, do so
-            if (!memoryFrontiers.isEmpty()) {
-                LongArrayList current = memoryFrontiers.get(memoryFrontiers.size() - 1);
-                if (current.size() + boards.size() <= MAX_FRONTIER_SIZE) {
-                    for (int i = 0; i < boards.size(); i++) {
-                        current.add(boards.get(i));
-                    }
-                    totalSize += boards.size();
-                    return;
-                }
-            }
-
-            // If current memory frontier is too big, move it to disk
-            if (!memoryFrontiers.isEmpty()) {
-                LongArrayList current = memoryFrontiers.get(memoryFrontiers.size() - 1);
-                if (current.size() >= FRONTIER_SPLIT_THRESHOLD) {
-                    String filename = TEMP_DIR + "/frontier_" + System.currentTimeMillis() + ".dat";
-                    saveFrontierToDisk(current, filename);
-                    diskFrontiers.add(filename);
-                    memoryFrontiers.remove(memoryFrontiers.size() - 1);
-                    current.clear();
-                }
-            }
+        public void addBoards(LongArrayList chunk) throws IOException {
+            boards.addAll(chunk.buffer, 0, chunk.size());
+        }
 
-            // Create new memory frontier
-            LongArrayList newFrontier = new LongArrayList(Math.min(MAX_FRONTIER_SIZE, boards.size()));
-            for (int i = 0; i < boards.size(); i++) {
-                newFrontier.add(boards.get(i));
-            }
-            memoryFrontiers.add(newFrontier);
-            totalSize += boards.size();
+        public void addBoards(MemorySegment src, ValueLayout.OfLong layout, long count) throws IOException {
+            boards.addAll(src, layout, count);
         }
 
         public long size() {
-            return totalSize;
+            return boards.size();
         }
 
         public boolean isEmpty() {
-            return totalSize == 0;
+            return boards.isEmpty();
+        }
+
+        public boolean isSpilled() {
+            return boards.isSpilled();
         }
 
         public FrontierIterator iterator() {
-            return new FrontierIterator(this);
+            return new FrontierIterator(boards);
         }
 
-        public void clear() {
-            // Clear memory frontiers
-            for (LongArrayList frontier : memoryFrontiers) {
-                frontier.clear();
-            }
-            memoryFrontiers.clear();
-
-            // Delete disk frontiers
-            for (String filename : diskFrontiers) {
-                try {
-                    Files.deleteIfExists(Paths.get(filename));
-                } catch (IOException e) {
-                    System.err.println("Warning: Could not delete " + filename);
-                }
-            }
-            diskFrontiers.clear();
-            processedFiles.clear();
-            totalSize = 0;
+        /** Batches for the expander, sized by the scheduler as they are taken. */
+        public Iterator<ExpandAndClassify.Batch> batches(BatchScheduler scheduler, int parentStones) {
+            return scheduler.batches(boards, parentStones);
         }
 
-        public void cleanupProcessedFiles() {
-            // Only delete files that have been marked as processed
-            List<String> toRemove = new ArrayList<>();
-            for (String filename : processedFiles) {
-                try {
-                    Files.deleteIfExists(Paths.get(filename));
-                    toRemove.add(filename);
-                } catch (IOException e) {
-                    // Ignore deletion errors
-                }
-            }
-            processedFiles.removeAll(toRemove);
+        /** Frees the store's memory and spill file. */
+        public void clear() throws IOException {
+            boards.close();
         }
+    }
+
+    /** Hands out consecutive chunks of a frontier as heap lists. */
+    private static class FrontierIterator {
+        private final LongStore boards;
+        private long position;
 
-        private void markFileAsProcessed(String filename) {
-            processedFiles.add(filename);
+        public FrontierIterator(LongStore boards) {
+            this.boards = boards;
         }
 
-        private void saveFrontierToDisk(LongArrayList frontier, String filename) throws IOException {
-            try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(
-                    new FileOutputStream(filename)))) {
-                dos.writeInt(frontier.size());
-                for (int i = 0; i < frontier.size(); i++) {
-                    dos.writeLong(frontier.get(i));
-                }
-            }
-            System.out.printf("│ 💾 Saved %,d boards to disk: %s%n", frontier.size(), filename);
+        public LongArrayList getNextChunk(int maxSize) {
+            int n = (int) Math.min(maxSize, boards.size() - position);
+            LongArrayList chunk = new LongArrayList(n);
+            boards.get(position, chunk.buffer, 0, n);
+            chunk.elementsCount = n;
+            position += n;
+            return chunk;
         }
 
-        private LongArrayList loadFrontierFromDisk(String filename) throws IOException {
-            try (DataInputStream dis = new DataInputStream(new BufferedInputStream(
-                    new FileInputStream(filename)))) {
-                int size = dis.readInt();
-                LongArrayList frontier = new LongArrayList(size);
-                for (int i = 0; i < size; i++) {
-                    frontier.add(dis.readLong());
-                }
-                return frontier;
-            }
+        public boolean hasMore() {
+            return position < boards.size();
         }
     }
 
-    private static class FrontierIterator {
-        private final MultiFrontier multiFrontier;
-        private int memoryIndex;
-        private int diskIndex;
-        private int positionInCurrent;
-        private LongArrayList currentMemoryFrontier;
-        private LongArrayList currentDiskFrontier;
-        private String currentDiskFile;
-
-        public FrontierIterator(MultiFrontier multiFrontier) {
-            this.multiFrontier = multiFrontier;
-            this.memoryIndex = 0;
-            this.diskIndex = 0;
-            this.positionInCurrent = 0;
-            this.currentDiskFile = null;
-            loadNextFrontier();
+    /**
+     * Streams each batch's terminals to disk and its frontier into the merge,
+     * straight from the expander's staging memory.
+     */
+    private class BatchWriter implements ExpandAndClassify.ResultSink {
+        private final String termXFile, termOFile, termTieFile;
+        private final FrontierDeduplicator dedup;
+        private int batchNum;
+        private long batchTerminals, batchFrontier;
+        long terminals;
+
+        BatchWriter(String termXFile, String termOFile, String termTieFile, FrontierDeduplicator dedup) {
+            this.termXFile = termXFile;
+            this.termOFile = termOFile;
+            this.termTieFile = termTieFile;
+            this.dedup = dedup;
         }
 
-        private void loadNextFrontier() {
-            // Try memory frontiers first
-            if (memoryIndex < multiFrontier.memoryFrontiers.size()) {
-                currentMemoryFrontier = multiFrontier.memoryFrontiers.get(memoryIndex);
-                currentDiskFrontier = null;
-                currentDiskFile = null;
-                memoryIndex++;
-                positionInCurrent = 0;
-                return;
-            }
-
-            // Then disk frontiers
-            if (diskIndex < multiFrontier.diskFrontiers.size()) {
-                try {
-                    String filename = multiFrontier.diskFrontiers.get(diskIndex);
-                    currentDiskFrontier = multiFrontier.loadFrontierFromDisk(filename);
-                    currentMemoryFrontier = null;
-                    currentDiskFile = filename;
-                    diskIndex++;
-                    positionInCurrent = 0;
-                    System.out.printf("│ 📀 Loaded %,d boards from disk%n", currentDiskFrontier.size());
-                } catch (IOException e) {
-                    System.err.println("Error loading frontier from disk: " + e.getMessage());
-                    currentDiskFrontier = null;
-                    currentMemoryFrontier = null;
-                    currentDiskFile = null;
+        @Override
+        public void accept(ExpandAndClassify.Output output, LongBuffer boards) throws IOException {
+            int n = boards.remaining();
+            switch (output) {
+                case FRONTIER -> {
+                    // Queue frontier boards from this batch for merging
+                    dedup.add(boards);
+                    batchFrontier += n;
+                    return;
                 }
-                return;
+                case X_WINS -> saveTerminalsToFile(boards, termXFile);
+                case O_WINS -> saveTerminalsToFile(boards, termOFile);
+                case TIES -> saveTerminalsToFile(boards, termTieFile);
             }
-
-            // No more frontiers
-            currentMemoryFrontier = null;
-            currentDiskFrontier = null;
-            currentDiskFile = null;
+            batchTerminals += n;
         }
 
-        public LongArrayList getNextChunk(int maxSize) {
-            LongArrayList chunk = new LongArrayList();
-
-            while (chunk.size() < maxSize && hasMore()) {
-                LongArrayList current = (currentMemoryFrontier != null) ? currentMemoryFrontier : currentDiskFrontier;
-                
-                if (current == null || positionInCurrent >= current.size()) {
-                    // Mark current disk file as fully processed before cleaning up
-                    if (currentDiskFrontier != null && currentDiskFile != null) {
-                        multiFrontier.markFileAsProcessed(currentDiskFile);
-                        currentDiskFrontier.clear();
-                        currentDiskFrontier = null;
-                        currentDiskFile = null;
-                    }
-                    loadNextFrontier();
-                    continue;
-                }
+        @Override
+        public void endBatch() {
+            batchNum++;
+            terminals += batchTerminals;
+            totalBoardsGenerated += batchTerminals + batchFrontier;
 
-                int remaining = Math.min(maxSize - chunk.size(), current.size() - positionInCurrent);
-                for (int i = 0; i < remaining; i++) {
-                    chunk.add(current.get(positionInCurrent + i));
-                }
-                positionInCurrent += remaining;
+            if (batchNum % 5 == 0 || batchNum <= 10) {
+                System.out.printf("│   Batch %d: %,d terminals, %,d frontier (target %,d children)%n",
+                    batchNum, batchTerminals, batchFrontier, scheduler.targetChildren());
             }
-
-            return chunk;
-        }
-
-        public boolean hasMore() {
-            if (currentMemoryFrontier != null && positionInCurrent < currentMemoryFrontier.size()) {
-                return true;
-            }
-            if (currentDiskFrontier != null && positionInCurrent < currentDiskFrontier.size()) {
-                return true;
-            }
-            return memoryIndex < multiFrontier.memoryFrontiers.size() || 
-                   diskIndex < multiFrontier.diskFrontiers.size();
+            batchTerminals = 0;
+            batchFrontier = 0;
         }
     }
 
-    private void saveTerminalsToFile(LongArrayList terminals, String filename) throws IOException {
-        if (terminals.isEmpty()) return;
-        
-        try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(
-                new FileOutputStream(filename, true)))) { // append mode
-            for (int i = 0; i < terminals.size(); i++) {
-                dos.writeLong(terminals.get(i));
+    /** Appends the boards as big-endian longs, the format the solver reads back. */
+    private void saveTerminalsToFile(LongBuffer terminals, String filename) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            while (terminals.hasRemaining()) {
+                writeScratch.clear();
+                LongBuffer longs = writeScratch.asLongBuffer();
+                int n = Math.min(terminals.remaining(), longs.capacity());
+                longs.put(terminals.slice().limit(n));
+                terminals.position(terminals.position() + n);
+                writeScratch.limit(n * Long.BYTES);
+                while (writeScratch.hasRemaining()) channel.write(writeScratch);
             }
         }
     }
 
     public void runTimingTest() {
+        runTimingTest(false);
+    }
+
+    /**
+     * @param resume continue after the last depth committed in the manifest whose
+     *               files still verify, instead of starting over from the empty board
+     */
+    public void runTimingTest(boolean resume) {
         long testStartTime = System.currentTimeMillis();
 
         try {
-            // Start with empty board
-            MultiFrontier frontier = new MultiFrontier();
-            LongArrayList initialBoard = new LongArrayList();
-            initialBoard.add(0L);
-            frontier.addBoards(initialBoard);
+            PrecomputeManifest manifest = new PrecomputeManifest(Paths.get(OUTPUT_DIR));
+            MultiFrontier frontier;
+            int startDepth = 1;
+            int last = resume ? manifest.resumableDepth() : 0;
+            if (last > 0) {
+                System.out.printf("Resuming after committed depth %d (%,d frontier boards)%n%n",
+                    last, manifest.entry(last).frontier);
+                frontier = loadDistinctFrontier(frontierFile(last));
+                totalTerminalBoards = manifest.totalTerminals();
+                startDepth = last + 1;
+            } else {
+                manifest.clear();
+                // Start with empty board
+                frontier = new MultiFrontier();
+                LongArrayList initialBoard = new LongArrayList();
+                initialBoard.add(0L);
+                frontier.addBoards(initialBoard);
+            }
 
-            for (int depth = 1; depth <= MAX_DEPTH; depth++) {
+            for (int depth = startDepth; depth <= MAX_DEPTH && !frontier.isEmpty(); depth++) {
                 long depthStartTime = System.currentTimeMillis();
 
                 System.out.printf("┌─ Depth %d ─ Frontier: %,d boards ─────────────────────────────┐%n", depth, frontier.size());
 
                 // Process depth using multi-frontier system
-                MultiFrontier nextFrontier = processDepthWithMultiFrontier(frontier, depth);
+                MultiFrontier nextFrontier = processDepthWithMultiFrontier(frontier, depth, manifest);
 
                 long depthEndTime = System.currentTimeMillis();
                 long depthTotalTime = depthEndTime - depthStartTime;
@@ -310,10 +234,8 @@ public class GPUTimer {
                 System.out.println("└──────────────────────────────────────────────────────────────┘");
                 System.out.println();
 
-                // Clear the old frontier to free memory immediately
+                // Free the old frontier's off-heap memory immediately
                 frontier.clear();
-                frontier = null;
-                System.gc();
 
                 // Update frontier for next iteration
                 frontier = nextFrontier;
@@ -334,6 +256,8 @@ public class GPUTimer {
             System.err.println("❌ Error managing frontiers: " + e.getMessage());
             e.printStackTrace();
         } finally {
+            expander.close();
+
             // Clean up temp directory
             try {
                 Files.walk(Paths.get(TEMP_DIR))
@@ -351,134 +275,66 @@ public class GPUTimer {
         printSummary(totalTestTime);
     }
 
-    private MultiFrontier processDepthWithMultiFrontier(MultiFrontier frontier, int depth) throws IOException {
-        // Calculate safe chunk size
-        long memoryPerBoard = Long.BYTES * EXPANSION_FACTOR;
-        int safeChunkSize = (int) Math.min(maxBoardsPerBatch, 
-            Math.min(FRONTIER_SPLIT_THRESHOLD / 2, RAM_BUDGET_BYTES / (memoryPerBoard * 8)));
+    private static Path frontierFile(int depth) {
+        return Paths.get(OUTPUT_DIR, "frontier_depth" + depth + ".dat");
+    }
 
-        // Calculate total chunks for progress tracking
-        int totalChunks = (int) ((frontier.size() + safeChunkSize - 1) / safeChunkSize);
+    private static Path countsFile(int depth) {
+        return Paths.get(OUTPUT_DIR, "frontier_depth" + depth + "_counts.dat");
+    }
 
-        MultiFrontier nextFrontier = new MultiFrontier();
-        long depthTerminals = 0;
-        long depthGPUTime = 0;
+    /**
+     * Expands one depth. Everything is written under staging names and only
+     * committed to the manifest once the depth is complete.
+     */
+    private MultiFrontier processDepthWithMultiFrontier(MultiFrontier frontier, int depth,
+                                                        PrecomputeManifest manifest) throws IOException {
+        FrontierDeduplicator dedup = new FrontierDeduplicator(Paths.get(TEMP_DIR), DEDUP_RUN_BOARDS);
 
         // Initialize terminal files for this depth
-        String termXFile = OUTPUT_DIR + "/terminals_depth" + depth + "_X.dat";
-        String termOFile = OUTPUT_DIR + "/terminals_depth" + depth + "_O.dat";
-        String termTieFile = OUTPUT_DIR + "/terminals_depth" + depth + "_TIE.dat";
-
-        // Clear existing files
-        Files.deleteIfExists(Paths.get(termXFile));
-        Files.deleteIfExists(Paths.get(termOFile));
-        Files.deleteIfExists(Paths.get(termTieFile));
-
-        FrontierIterator iterator = frontier.iterator();
-        int chunkNum = 0;
-
-        while (iterator.hasMore()) {
-            chunkNum++;
-            
-            // Get next chunk of boards to process
-            LongArrayList chunk = iterator.getNextChunk(safeChunkSize);
-            if (chunk.isEmpty()) break;
-
-            System.out.printf("│ Processing chunk %d/%d: %,d boards%n", chunkNum, totalChunks, chunk.size());
-
-            // Monitor memory
-            Runtime runtime = Runtime.getRuntime();
-            long usedMemory = runtime.totalMemory() - runtime.freeMemory();
-            long maxMemory = runtime.maxMemory();
-            double memoryUsage = (double) usedMemory / maxMemory;
-
-            if (memoryUsage > 0.8) {
-                System.out.printf("│   Memory: %.1f%% - forcing GC%n", memoryUsage * 100);
-                System.gc();
-                Thread.yield();
-            }
-
-            // Process chunk in batches
-            LongArrayList chunkResults = new LongArrayList();
-            long chunkTerminals = 0;
-            long chunkGPUTime = 0;
-
-            int totalBatches = (chunk.size() + maxBoardsPerBatch - 1) / maxBoardsPerBatch;
-
-            for (int batchStart = 0; batchStart < chunk.size(); batchStart += maxBoardsPerBatch) {
-                int batchEnd = Math.min(batchStart + maxBoardsPerBatch, chunk.size());
-                int batchLen = batchEnd - batchStart;
-                int batchNum = (batchStart / maxBoardsPerBatch) + 1;
-
-                // Create batch
-                LongArrayList batch = new LongArrayList(batchLen);
-                for (int i = batchStart; i < batchEnd; i++) {
-                    batch.add(chunk.get(i));
-                }
-
-                // Time GPU expansion
-                long gpuStartTime = System.nanoTime();
-                ExpandAndClassify.Result result = expander.run(batch, depth);
-                long gpuEndTime = System.nanoTime();
-
-                long batchGPUTime = (gpuEndTime - gpuStartTime) / 1_000_000;
-                chunkGPUTime += batchGPUTime;
-
-                // Count terminals and save to files
-                long batchTerminals = result.termX.size() + result.termO.size() + result.termTie.size();
-                chunkTerminals += batchTerminals;
-
-                // Save terminals to files
-                saveTerminalsToFile(result.termX, termXFile);
-                saveTerminalsToFile(result.termO, termOFile);
-                saveTerminalsToFile(result.termTie, termTieFile);
-
-                // Collect frontier boards from this batch
-                for (int i = 0; i < result.frontierChunks.size(); i++) {
-                    chunkResults.add(result.frontierChunks.get(i));
-                }
-
-                totalBoardsGenerated += batchTerminals + result.frontierChunks.size();
-
-                if (batchNum % 5 == 0 || totalBatches <= 10) {
-                    System.out.printf("│   Batch %d/%d: %,d→%,d terminals, %,d frontier (%dms)%n",
-                        batchNum, totalBatches, batchLen, batchTerminals, result.frontierChunks.size(), batchGPUTime);
-                }
-
-                // Clear batch immediately
-                batch.clear();
-                batch = null;
-
-                // Add results to next frontier in smaller chunks to avoid memory issues
-                if (chunkResults.size() > FRONTIER_SPLIT_THRESHOLD / 4) {
-                    nextFrontier.addBoards(chunkResults);
-                    chunkResults.clear();
-                    chunkResults = new LongArrayList();
-                }
-            }
-
-            // Add remaining results
-            if (!chunkResults.isEmpty()) {
-                nextFrontier.addBoards(chunkResults);
-                chunkResults.clear();
-            }
-
-            depthTerminals += chunkTerminals;
-            depthGPUTime += chunkGPUTime;
-
-            System.out.printf("│ Chunk %d/%d complete: %,d terminals, next frontier: %,d%n",
-                chunkNum, totalChunks, chunkTerminals, nextFrontier.size());
-
-            // Clear chunk
-            chunk.clear();
-            chunk = null;
+        Path termX = Paths.get(OUTPUT_DIR, "terminals_depth" + depth + "_X.dat");
+        Path termO = Paths.get(OUTPUT_DIR, "terminals_depth" + depth + "_O.dat");
+        Path termTie = Paths.get(OUTPUT_DIR, "terminals_depth" + depth + "_TIE.dat");
+        String termXFile = PrecomputeManifest.staging(termX).toString();
+        String termOFile = PrecomputeManifest.staging(termO).toString();
+        String termTieFile = PrecomputeManifest.staging(termTie).toString();
+
+        // Truncate anything a crashed attempt at this depth left behind
+        for (String f : new String[]{termXFile, termOFile, termTieFile}) {
+            Files.write(Paths.get(f), new byte[0]);
+        }
 
-            // Force GC every few chunks and clean up processed temp frontiers
-            if (chunkNum % 3 == 0) {
-                System.gc();
-                frontier.cleanupProcessedFiles(); // Only delete files that have been fully consumed
+        BatchWriter writer = new BatchWriter(termXFile, termOFile, termTieFile, dedup);
+        long gpuStartTime = System.nanoTime();
+        // The parents hold depth - 1 stones, which decides the side to move and the children per board;
+        // the expander overlaps uploads, kernels and readback with the writes in the sink
+        expander.runAll(frontier.batches(scheduler, depth - 1), depth - 1, SYMMETRY, scheduler.measure(writer));
+        long depthGPUTime = (System.nanoTime() - gpuStartTime) / 1_000_000;
+        long depthTerminals = writer.terminals;
+
+        // Merge transpositions: the same stones reached in different orders are kept once
+        Path frontierFile = frontierFile(depth);
+        long emitted = dedup.addedCount();
+        long distinct = dedup.finish(PrecomputeManifest.staging(frontierFile), null);
+        totalDuplicatesMerged += emitted - distinct;
+        System.out.printf("│ Dedup: %,d emitted → %,d distinct (%.1fx)%n",
+            emitted, distinct, distinct > 0 ? (double) emitted / distinct : 0.0);
+
+        List<Path> outputs = new ArrayList<>(List.of(termX, termO, termTie, frontierFile));
+        if (KEEP_PATH_COUNTS) {
+            // Each child sums the path counts of its parents, read back from the previous depth
+            try (PathCounts parents = depth == 1 ? PathCounts.root()
+                    : PathCounts.open(frontierFile(depth - 1), countsFile(depth - 1))) {
+                long paths = parents.write(PrecomputeManifest.staging(frontierFile), depth,
+                    PrecomputeManifest.staging(countsFile(depth)));
+                System.out.printf("│ Paths: %,d move orders reach the frontier%n", paths);
             }
+            outputs.add(countsFile(depth));
         }
+        manifest.commit(depth, distinct, depthTerminals, outputs);
+        System.out.printf("│ Committed depth %d to %s%n", depth, PrecomputeManifest.FILE_NAME);
+
+        MultiFrontier nextFrontier = loadDistinctFrontier(frontierFile);
 
         totalTerminalBoards += depthTerminals;
         totalGPUTime += depthGPUTime;
@@ -493,6 +349,31 @@ public class GPUTimer {
         return nextFrontier;
     }
 
+    /** Copies a sorted, deduplicated frontier file into a MultiFrontier with bulk segment copies. */
+    private MultiFrontier loadDistinctFrontier(Path file) throws IOException {
+        MultiFrontier frontier = new MultiFrontier();
+        try (MappedLongFile in = MappedLongFile.openReadOnly(file)) {
+            frontier.addBoards(in.slice(0, in.size()), MappedLongFile.LAYOUT, in.size());
+        }
+        if (SYMMETRY == ExpandAndClassify.SymmetryMode.CANONICAL_WITH_CLASS_SIZE) {
+            System.out.printf("│ Positions represented by %,d canonical boards: %,d%n",
+                frontier.size(), weightedCount(frontier));
+        }
+        if (frontier.isSpilled()) {
+            System.out.printf("│ Frontier spilled to a mapped file in %s%n", TEMP_DIR);
+        }
+        return frontier;
+    }
+
+    private static long weightedCount(MultiFrontier frontier) {
+        long represented = 0;
+        FrontierIterator it = frontier.iterator();
+        while (it.hasMore()) {
+            represented += ExpandAndClassify.weightedCount(it.getNextChunk(FRONTIER_SPLIT_THRESHOLD / 4));
+        }
+        return represented;
+    }
+
     private void printSummary(long totalTestTime) {
         System.out.println("┌─ PERFORMANCE SUMMARY ──────────────────────────────────────────┐");
         System.out.printf("│ Total Time: %,d ms (%.2f seconds)%n", totalTestTime, totalTestTime / 1000.0);
@@ -505,6 +386,7 @@ public class GPUTimer {
         System.out.printf("│ Frontier Boards:  %,d (%.1f%%)%n", 
             totalBoardsGenerated - totalTerminalBoards,
             totalBoardsGenerated > 0 ? (100.0 * (totalBoardsGenerated - totalTerminalBoards) / totalBoardsGenerated) : 0.0);
+        System.out.printf("│ Transpositions Merged: %,d%n", totalDuplicatesMerged);
         System.out.println("├─────────────────────────────────────────────────────────────────┤");
         System.out.printf("│ Terminal files saved to: %s%n", OUTPUT_DIR);
         
@@ -533,8 +415,9 @@ public class GPUTimer {
 
     public static void main(String[] args) {
         try {
+            boolean resume = Arrays.asList(args).contains("--resume");
             GPUTimer timer = new GPUTimer();
-            timer.runTimingTest();
+            timer.runTimingTest(resume);
         } catch (IOException e) {
             System.err.println("❌ Failed to initialize GPU context: " + e.getMessage());
             e.printStackTrace();
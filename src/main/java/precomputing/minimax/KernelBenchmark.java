@@ -0,0 +1,113 @@
+package precomputing.minimax;
+
+import com.carrotsearch.hppc.LongArrayList;
+import game.Board;
+import game.WinLines;
+import org.jocl.Sizeof;
+import support.CLContext;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Times every {@link ExpandAndClassify.KernelVariant} on the same sample of
+ * non-terminal parents at each depth, and checks that all variants emit the
+ * same boards.
+ * <p>
+ * Usage: {@code KernelBenchmark [boardsPerDepth] [repetitions]}
+ */
+public class KernelBenchmark {
+    private static final int DEFAULT_BOARDS = 1 << 18;
+    private static final int DEFAULT_REPETITIONS = 5;
+    private static final int MAX_ATTEMPTS_PER_BOARD = 100;
+    private static final ExpandAndClassify.SymmetryMode SYMMETRY = GPUTimer.SYMMETRY;
+
+    public static void main(String[] args) throws IOException {
+        int boards = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_BOARDS;
+        int repetitions = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_REPETITIONS;
+
+        CLContext cl = new CLContext("cl/expand_and_classify.cl");
+        int maxBoards = (int) Math.min(Integer.MAX_VALUE / Sizeof.cl_ulong, cl.maxAllocBytes / Sizeof.cl_ulong);
+        ExpandAndClassify.KernelVariant[] variants = ExpandAndClassify.KernelVariant.values();
+        ExpandAndClassify[] expanders = new ExpandAndClassify[variants.length];
+        for (int v = 0; v < variants.length; v++) {
+            expanders[v] = new ExpandAndClassify(cl, maxBoards, variants[v]);
+        }
+
+        System.out.printf("%-6s %10s", "depth", "parents");
+        for (ExpandAndClassify.KernelVariant variant : variants) System.out.printf(" %16s", variant);
+        System.out.println("   (million parents/s, best of " + repetitions + ")");
+
+        Random random = new Random(27);
+        try {
+            for (int depth = 0; depth < Board.CELLS; depth++) {
+                LongArrayList parents = sample(depth, boards, random);
+                if (parents.isEmpty()) {
+                    System.out.printf("%-6d %10s%n", depth, "none");
+                    continue;
+                }
+                int batch = Math.min(parents.size(), expanders[0].maxBatchBoards(depth));
+                LongArrayList input = new LongArrayList(batch);
+                input.add(parents.buffer, 0, batch);
+
+                System.out.printf("%-6d %,10d", depth, batch);
+                long[][] reference = null;
+                for (ExpandAndClassify expander : expanders) {
+                    ExpandAndClassify.Result result = expander.run(input, depth, SYMMETRY); // warm-up
+                    long best = Long.MAX_VALUE;
+                    for (int r = 0; r < repetitions; r++) {
+                        long start = System.nanoTime();
+                        result = expander.run(input, depth, SYMMETRY);
+                        best = Math.min(best, System.nanoTime() - start);
+                    }
+                    System.out.printf(" %16.2f", batch * 1e3 / best);
+
+                    long[][] streams = sorted(result);
+                    if (reference == null) reference = streams;
+                    else if (!Arrays.deepEquals(reference, streams))
+                        throw new IllegalStateException(expander.describe() + " disagrees with "
+                                + expanders[0].describe() + " at depth " + depth);
+                }
+                System.out.println();
+            }
+        } finally {
+            for (ExpandAndClassify expander : expanders) expander.close();
+        }
+    }
+
+    /**
+     * Up to {@code count} random parents holding {@code depth} stones on which
+     * neither side has won yet. Near the end of the game most random fillings
+     * are won, so fewer may come back.
+     */
+    static LongArrayList sample(int depth, int count, Random random) {
+        LongArrayList parents = new LongArrayList(count);
+        int[] cells = new int[Board.CELLS];
+        for (int i = 0; i < cells.length; i++) cells[i] = i;
+        for (long attempts = (long) count * MAX_ATTEMPTS_PER_BOARD; attempts > 0 && parents.size() < count; attempts--) {
+            long x = 0, o = 0;
+            for (int i = 0; i < depth; i++) {
+                int j = i + random.nextInt(cells.length - i);
+                int cell = cells[j];
+                cells[j] = cells[i];
+                cells[i] = cell;
+                if ((i & 1) == 0) x |= 1L << cell;
+                else o |= 1L << cell;
+            }
+            if (WinLines.completed(x) < 2 && WinLines.completed(o) < 2) parents.add(x | (o << Board.O_SHIFT));
+        }
+        return parents;
+    }
+
+    /** The four output streams of {@code result}, each sorted, for comparing backends. */
+    static long[][] sorted(ExpandAndClassify.Result result) {
+        LongArrayList[] lists = {result.frontierChunks, result.termX, result.termO, result.termTie};
+        long[][] streams = new long[lists.length][];
+        for (int i = 0; i < lists.length; i++) {
+            streams[i] = lists[i].toArray();
+            Arrays.sort(streams[i]);
+        }
+        return streams;
+    }
+}
@@ -1,101 +1,98 @@
 package precomputing.minimax;
 
-import com.carrotsearch.hppc.LongArrayList;
-import com.carrotsearch.hppc.cursors.LongCursor;
-import support.CLContext;
-import org.jocl.Sizeof;
+import support.LongStore;
+import support.MappedLongFile;
 
 import java.io.*;
-import java.nio.LongBuffer;
-import java.nio.channels.FileChannel;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 
 public class Main {
     private static final int MAX_DEPTH = 27;
     static final long RAM_BUDGET_BYTES = 40L * 1024 * 1024 * 1024; // 40 GB
-    static final int EXPANSION_FACTOR = 27;
-    static int MAX_BOARDS_PER_BATCH = (int) (RAM_BUDGET_BYTES / (Long.BYTES * (1 + EXPANSION_FACTOR)));
-    private static final long MAX_POSSIBLE_TERMS = 1_000_000_000L;
+    static final long BATCH_BUDGET_BYTES = RAM_BUDGET_BYTES / 4; // host memory for batches in flight
+    private static final Path DEDUP_TEMP_DIR = Paths.get("src/main/resources/MiniMax/dedup_runs");
+    private static final int DEDUP_RUN_BOARDS = 1 << 24; // 128 MB of longs per sorted run
+    private static final long FRONTIER_MEMORY_BYTES = RAM_BUDGET_BYTES / 4;
 
     public static void main(String[] args) throws IOException {
+        boolean resume = Arrays.asList(args).contains("--resume");
         try {
-            // 1) Initialize OpenCL context & expander
-            CLContext clContext = new CLContext("cl/expand_and_classify.cl");
-            // Determine the maximum boards-per-chunk from device limits
-            int maxBoards = (int) (clContext.maxAllocBytes / Sizeof.cl_ulong);
-            ExpandAndClassify expander = new ExpandAndClassify(clContext, maxBoards);
+            // 1) Initialize the expander (OpenCL GPU, or the CPU fallback; see ExpandAndClassify.open)
+            ExpandAndClassify expander = ExpandAndClassify.open("cl/expand_and_classify.cl");
+            System.out.println("Expander: " + expander.describe());
+            BatchScheduler scheduler = new BatchScheduler(expander, BATCH_BUDGET_BYTES);
 
             // 2) Prepare terminals.bin
             Path outFile = Paths.get("src/main/resources/MiniMax/terminals.bin");
             outFile.getParent().toFile().mkdirs();
 
-            FileChannel fc = new RandomAccessFile(new File("C:\\Users\\webbometric\\Documents\\GitHub\\3DTicTacToe\\src\\main\\resources\\MiniMax\\terminals.bin"), "rw").getChannel();
-            long maxBytes = MAX_POSSIBLE_TERMS * Long.BYTES;
-            fc.truncate(maxBytes);
-            LongBuffer lb = fc.map(FileChannel.MapMode.READ_WRITE, 0, fc.size()).asLongBuffer();
-
-            // 3) Seed frontier with the empty board (bitboard = 0)
-            LongArrayList frontier = new LongArrayList();
-            frontier.add(0L);
+            // One segment mapping with 64-bit offsets; it grows as terminals arrive, far past 2 GB
+            MappedLongFile terminals = MappedLongFile.openReadWrite(outFile);
+
+            // 3) Seed frontier with the empty board (bitboard = 0), or pick up after the last committed depth
+            PrecomputeManifest manifest = new PrecomputeManifest(outFile.getParent());
+            // Frontiers live off-heap and spill to a mapped file in DEDUP_TEMP_DIR past a quarter of the RAM budget
+            LongStore frontier = new LongStore(DEDUP_TEMP_DIR, FRONTIER_MEMORY_BYTES);
+            int startDepth = 1;
+            int last = resume ? manifest.resumableDepth() : 0;
+            if (last > 0) {
+                readFrontier(frontierPath(last), frontier);
+                // Terminals past the committed total belong to the depth that crashed and get overwritten
+                terminals.truncate(manifest.totalTerminals());
+                startDepth = last + 1;
+                System.out.printf("Resuming after committed depth %d (%d frontier boards)%n", last, frontier.size());
+            } else {
+                manifest.clear();
+                terminals.truncate(0);
+                frontier.add(0L);
+            }
 
             // 4) Iterate depths 1 through MAX_DEPTH
-            for (int depth = 1; depth <= MAX_DEPTH; depth++) {
+            for (int depth = startDepth; depth <= MAX_DEPTH; depth++) {
                 System.out.printf("=== Expanding depth %d (frontier size: %d) ===%n", depth, frontier.size());
 
-                int totalTerms = 0;
-
-                long nextFrontierSize = frontier.size() * (EXPANSION_FACTOR - (depth - 1));
-                Path nextFrontierPath = Paths.get("src/main/resources/MiniMax/next_frontier_depth" + depth + ".bin");
-                FileChannel nextFC = new RandomAccessFile(new File(nextFrontierPath.toString()), "rw").getChannel();
-                LongBuffer nextLB = nextFC.map(FileChannel.MapMode.READ_WRITE, 0, nextFrontierSize * Long.BYTES).asLongBuffer();
-
-                for (int batchStart = 0; batchStart < frontier.size(); batchStart += MAX_BOARDS_PER_BATCH) {
-                    int batchEnd = Math.min(batchStart + MAX_BOARDS_PER_BATCH, frontier.size());
-                    int batchLen = batchEnd - batchStart;
-                    LongArrayList batch = new LongArrayList(batchLen);
-                    batch.add(frontier.buffer, batchStart, batchEnd);
-
-                    // Expand & classify this batch
-                    ExpandAndClassify.Result res = expander.run(batch, depth);
-
-                    // Handle terminals as before (stream to disk)
-                    int batchTermCount = res.termX.size() + res.termO.size() + res.termTie.size();
-                    LongArrayList allBatchTerms = new LongArrayList(batchTermCount);
-                    int idx = 0;
-
-                    for (LongCursor b : res.termX)   allBatchTerms.set(idx++,b.value);
-                    for (LongCursor b : res.termO)   allBatchTerms.set(idx++,b.value);
-                    for (LongCursor b : res.termTie) allBatchTerms.set(idx++,b.value);
-                    if (batchTermCount > 0) {
-                        lb.put(allBatchTerms.buffer);
-                    }
-                    totalTerms += batchTermCount;
-
-                    // Write non-terminals
-                    for (LongCursor c : res.frontierChunks) {
-                        LongArrayList chunk = LongArrayList.from(c.value);
-                        for (LongCursor lc : chunk) {
-                            nextLB.put(lc.value);
-                        }
+                long[] totalTerms = {0};
+                long termStart = terminals.size();
+
+                // Children are merged as they arrive, so the next frontier only holds distinct boards.
+                Path nextFrontierPath = frontierPath(depth);
+                FrontierDeduplicator dedup = new FrontierDeduplicator(DEDUP_TEMP_DIR, DEDUP_RUN_BOARDS);
+
+                // Expand & classify in pipelined batches (parents hold depth - 1 stones, so X moves first)
+                expander.runAll(scheduler.batches(frontier, depth - 1), depth - 1,
+                        ExpandAndClassify.SymmetryMode.NONE, scheduler.measure((output, boards) -> {
+                    if (output == ExpandAndClassify.Output.FRONTIER) {
+                        // Queue non-terminals for merging
+                        dedup.add(boards);
+                    } else {
+                        // Terminals go straight from the staging buffer to the mapped file
+                        totalTerms[0] += boards.remaining();
+                        terminals.append(boards);
                     }
+                }));
+                System.out.printf("Depth %d: %d terminal boards%n", depth, totalTerms[0]);
 
-                }
-                System.out.printf("Depth %d: %d terminal boards%n", depth, totalTerms);
+                long emitted = dedup.addedCount();
+                long distinct = dedup.finish(PrecomputeManifest.staging(nextFrontierPath), null);
+                System.out.printf("Depth %d: %d frontier boards emitted, %d distinct%n", depth, emitted, distinct);
 
-                nextFC.close();
+                // Commit: terminals reach the disk before the manifest records this depth's range of them
+                terminals.force();
+                manifest.commit(depth, distinct, totalTerms[0], List.of(nextFrontierPath),
+                        Map.of(outFile, new long[]{termStart * Long.BYTES, totalTerms[0] * Long.BYTES}));
 
-                // Now, for the next loop, read the file back into batches for processing
-                LongArrayList nextFrontierList = new LongArrayList();
-                FileChannel readFC = new FileInputStream(nextFrontierPath.toFile()).getChannel();
-                LongBuffer readLB = readFC.map(FileChannel.MapMode.READ_ONLY, 0, readFC.size()).asLongBuffer();
-                while (readLB.hasRemaining()) {
-                    nextFrontierList.add(readLB.get());
-                }
-                frontier = nextFrontierList;
+                // Now, for the next loop, read the file back into the same store
+                frontier.clear();
+                readFrontier(nextFrontierPath, frontier);
             }
 
-            fc.close();
+            frontier.close();
+            terminals.close();
+            expander.close();
 
             System.out.println("Done! All terminal positions written to " + outFile);
         } catch (IOException e) {
@@ -104,4 +101,14 @@ public class Main {
         }
 
     }
+
+    private static Path frontierPath(int depth) {
+        return Paths.get("src/main/resources/MiniMax/next_frontier_depth" + depth + ".bin");
+    }
+
+    private static void readFrontier(Path path, LongStore frontier) throws IOException {
+        try (MappedLongFile file = MappedLongFile.openReadOnly(path)) {
+            frontier.addAll(file.slice(0, file.size()), MappedLongFile.LAYOUT, file.size());
+        }
+    }
 }
@@ -0,0 +1,123 @@
+package precomputing.minimax;
+
+import support.MappedLongFile;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Path multiplicities of one deduplicated depth: how many move orders from the
+ * empty board reach each frontier board, as a file of longs parallel to the
+ * sorted frontier file.
+ * <p>
+ * A child's count is the sum of its parents' counts. The expander emits
+ * children without a parent index, so the weights are pulled instead of pushed:
+ * once a depth is merged, each distinct child looks up every board one of the
+ * last mover's stones away in the previous depth's sorted frontier and adds the
+ * counts it finds. Terminal and unreachable predecessors are not in that file
+ * and contribute nothing, which is exactly the set of parents never expanded.
+ * <p>
+ * The counts only mean something for raw boards ({@link ExpandAndClassify.SymmetryMode#NONE}):
+ * a canonical child's predecessors are generally not canonical themselves.
+ * They saturate at {@link Long#MAX_VALUE}, which no depth below 26 can reach.
+ */
+class PathCounts implements Closeable {
+    private static final int BLOCK = 1 << 16;
+    private static final int CELLS = 27;
+
+    private final MappedLongFile parents;
+    private final MappedLongFile parentCounts;
+
+    private PathCounts(MappedLongFile parents, MappedLongFile parentCounts) {
+        this.parents = parents;
+        this.parentCounts = parentCounts;
+    }
+
+    /** The parents of depth 1: the empty board, reached once. */
+    static PathCounts root() {
+        return new PathCounts(null, null);
+    }
+
+    /** Maps the frontier and counts files of the previous depth. */
+    static PathCounts open(Path frontierFile, Path countsFile) throws IOException {
+        MappedLongFile boards = MappedLongFile.openReadOnly(frontierFile);
+        try {
+            MappedLongFile counts = MappedLongFile.openReadOnly(countsFile);
+            if (counts.size() != boards.size()) {
+                counts.close();
+                throw new IOException("Frontier and counts files differ in length: " + frontierFile + ", " + countsFile);
+            }
+            return new PathCounts(boards, counts);
+        } catch (IOException | RuntimeException e) {
+            boards.close();
+            throw e;
+        }
+    }
+
+    /** Paths reaching {@code parent}, or 0 if it is not a frontier board of the previous depth. */
+    long countOf(long parent) {
+        if (parents == null) return parent == 0L ? 1 : 0;
+
+        long lo = 0, hi = parents.size() - 1;
+        while (lo <= hi) {
+            long mid = (lo + hi) >>> 1;
+            long b = parents.get(mid);
+            if (b < parent) lo = mid + 1;
+            else if (b > parent) hi = mid - 1;
+            else return parentCounts.get(mid);
+        }
+        return 0;
+    }
+
+    /**
+     * Paths reaching {@code child}, a board holding {@code stones} stones: the
+     * sum over the boards with one of the last mover's stones taken back.
+     */
+    long countOf(long child, int stones) {
+        // X moves when the parent holds an even number of stones, so X moved last when stones is odd
+        int shift = (stones & 1) == 1 ? 0 : CELLS;
+        long moved = (child >>> shift) & ((1L << CELLS) - 1);
+        long total = 0;
+        while (moved != 0) {
+            long cell = Long.lowestOneBit(moved);
+            moved ^= cell;
+            long n = countOf(child & ~(cell << shift));
+            total = total > Long.MAX_VALUE - n ? Long.MAX_VALUE : total + n;
+        }
+        return total;
+    }
+
+    /**
+     * Writes the count of every board in {@code frontierFile} (sorted, distinct,
+     * {@code stones} stones each) to {@code out}, in the same order.
+     *
+     * @return the total number of paths reaching the depth's frontier
+     */
+    long write(Path frontierFile, int stones, Path out) throws IOException {
+        Files.deleteIfExists(out);
+        long[] boards = new long[BLOCK];
+        long[] counts = new long[BLOCK];
+        long total = 0;
+        try (MappedLongFile in = MappedLongFile.openReadOnly(frontierFile);
+             MappedLongFile dst = MappedLongFile.openReadWrite(out)) {
+            for (long at = 0; at < in.size(); at += BLOCK) {
+                int n = (int) Math.min(BLOCK, in.size() - at);
+                in.read(at, boards, 0, n);
+                for (int i = 0; i < n; i++) {
+                    counts[i] = countOf(boards[i], stones);
+                    total = total > Long.MAX_VALUE - counts[i] ? Long.MAX_VALUE : total + counts[i];
+                }
+                dst.append(counts, 0, n);
+            }
+        }
+        return total;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (parents != null) parents.close();
+        if (parentCounts != null) parentCounts.close();
+    }
+}
@@ -0,0 +1,244 @@
+package precomputing.minimax;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * Record of the depths a precompute run has fully committed, so a crashed run
+ * can pick up after the last one instead of starting from the empty board.
+ * <p>
+ * A depth is written under staging names ({@link #staging}) and committed in
+ * two steps: each staged file is forced to disk and renamed onto its final
+ * name, then the manifest is rewritten through a temporary file and renamed
+ * over the old one. The manifest rename is the commit point. A crash before it leaves the
+ * previous manifest in place, the depth is redone on resume, and any final
+ * files it had already renamed are simply overwritten.
+ * <p>
+ * Files that every depth appends to, like Main's {@code terminals.bin}, are
+ * not staged. Each depth records the byte range it appended instead, and a
+ * resumed run truncates whatever follows the last committed range.
+ * <p>
+ * The manifest is a text file with one line per depth: the depth, the number
+ * of distinct frontier boards, the number of terminals, and each output file
+ * as {@code name:bytes:crc32}, or {@code name@offset:bytes:crc32} for an
+ * appended range. File names are relative to the manifest's directory.
+ */
+public class PrecomputeManifest {
+    public static final String FILE_NAME = "precompute_manifest.txt";
+    private static final String STAGING_SUFFIX = ".partial";
+    private static final int CHECKSUM_BUFFER_BYTES = 1 << 20;
+
+    /** One committed depth. */
+    public static class Entry {
+        public final int depth;
+        public final long frontier;
+        public final long terminals;
+        /** File name to {bytes, crc32, offset}, in commit order; the offset is -1 for a whole file. */
+        final Map<String, long[]> files;
+
+        Entry(int depth, long frontier, long terminals, Map<String, long[]> files) {
+            this.depth = depth;
+            this.frontier = frontier;
+            this.terminals = terminals;
+            this.files = files;
+        }
+    }
+
+    private final Path dir;
+    private final Path file;
+    private final TreeMap<Integer, Entry> entries = new TreeMap<>();
+
+    /** Loads the manifest in {@code dir}, or starts an empty one if there is none. */
+    public PrecomputeManifest(Path dir) throws IOException {
+        this.dir = dir;
+        this.file = dir.resolve(FILE_NAME);
+        if (!Files.exists(file)) return;
+
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            String[] tokens = line.split("\\s+");
+            try {
+                Map<String, long[]> files = new LinkedHashMap<>();
+                for (int i = 3; i < tokens.length; i++) {
+                    String[] parts = tokens[i].split(":");
+                    String[] name = parts[0].split("@");
+                    long offset = name.length > 1 ? Long.parseLong(name[1]) : -1;
+                    files.put(name[0], new long[]{Long.parseLong(parts[1]), Long.parseLong(parts[2], 16), offset});
+                }
+                int depth = Integer.parseInt(tokens[0]);
+                entries.put(depth, new Entry(depth, Long.parseLong(tokens[1]), Long.parseLong(tokens[2]), files));
+            } catch (RuntimeException e) {
+                throw new IOException("Malformed manifest line in " + file + ": " + line, e);
+            }
+        }
+    }
+
+    /** The name a depth's output is written under until it is committed. */
+    public static Path staging(Path file) {
+        return file.resolveSibling(file.getFileName() + STAGING_SUFFIX);
+    }
+
+    /** The deepest committed depth, or 0 when nothing is committed (the empty board needs no file). */
+    public int lastDepth() {
+        return entries.isEmpty() ? 0 : entries.lastKey();
+    }
+
+    public Entry entry(int depth) {
+        return entries.get(depth);
+    }
+
+    /** Sum of the terminal counts of all committed depths. */
+    public long totalTerminals() {
+        long total = 0;
+        for (Entry e : entries.values()) total += e.terminals;
+        return total;
+    }
+
+    /**
+     * Moves the staged {@code files} of {@code depth} into place and records
+     * them. Entries for deeper depths, left over from an earlier run, are
+     * dropped, since they no longer follow from what is on disk.
+     */
+    public void commit(int depth, long frontier, long terminals, List<Path> files) throws IOException {
+        commit(depth, frontier, terminals, files, Map.of());
+    }
+
+    /**
+     * Like {@link #commit(int, long, long, List)}, and also records the range
+     * this depth appended to each file in {@code appended}, as {offset, bytes}.
+     * The file may extend past the range (a mapped file is padded to its
+     * capacity); the caller forces the range to disk first.
+     */
+    public void commit(int depth, long frontier, long terminals, List<Path> files,
+                       Map<Path, long[]> appended) throws IOException {
+        Map<String, long[]> records = new LinkedHashMap<>();
+        for (Path f : files) {
+            Path staged = staging(f);
+            if (Files.exists(staged)) {
+                // The rename must not reach the disk ahead of the data it names
+                force(staged);
+                move(staged, f);
+            }
+            long bytes = Files.size(f);
+            records.put(f.getFileName().toString(), new long[]{bytes, checksum(f, 0, bytes), -1});
+        }
+        for (Map.Entry<Path, long[]> a : appended.entrySet()) {
+            long offset = a.getValue()[0], bytes = a.getValue()[1];
+            records.put(a.getKey().getFileName().toString(),
+                    new long[]{bytes, checksum(a.getKey(), offset, bytes), offset});
+        }
+        entries.tailMap(depth, true).clear();
+        entries.put(depth, new Entry(depth, frontier, terminals, records));
+        write();
+    }
+
+    /** Forgets every committed depth, for a run that starts over. */
+    public void clear() throws IOException {
+        entries.clear();
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * The deepest committed depth whose files still verify, for a resumed run.
+     * A depth that fails is reported and dropped, so the run falls back to the
+     * one before it; 0 means nothing usable is left and the run starts over.
+     */
+    public int resumableDepth() throws IOException {
+        boolean dropped = false;
+        while (!entries.isEmpty()) {
+            int last = entries.lastKey();
+            try {
+                verify(last);
+                break;
+            } catch (IOException e) {
+                System.err.printf("Committed depth %d no longer verifies, falling back: %s%n", last, e.getMessage());
+                entries.remove(last);
+                dropped = true;
+            }
+        }
+        if (dropped) write();
+        return lastDepth();
+    }
+
+    /** Checks that the files of {@code depth} still have the recorded sizes and checksums. */
+    public void verify(int depth) throws IOException {
+        Entry e = entries.get(depth);
+        if (e == null) throw new IOException("Depth " + depth + " is not committed in " + file);
+        for (Map.Entry<String, long[]> f : e.files.entrySet()) {
+            Path path = dir.resolve(f.getKey());
+            if (!Files.exists(path)) throw new IOException("Committed file is missing: " + path);
+            long recorded = f.getValue()[0];
+            long offset = Math.max(f.getValue()[2], 0);
+            long bytes = Files.size(path);
+            // An appended range only has to be present; later, uncommitted appends may follow it
+            if (f.getValue()[2] < 0 ? bytes != recorded : bytes < offset + recorded) {
+                throw new IOException(path + " has " + bytes + " bytes, manifest says "
+                        + (f.getValue()[2] < 0 ? "" : "at least ") + (offset + recorded));
+            }
+            if (checksum(path, offset, recorded) != f.getValue()[1]) {
+                throw new IOException(path + " does not match its checksum in " + file);
+            }
+        }
+    }
+
+    private void write() throws IOException {
+        Path tmp = staging(file);
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            StringBuilder sb = new StringBuilder("# depth frontier terminals file:bytes:crc32...\n");
+            for (Entry e : entries.values()) {
+                sb.append(e.depth).append(' ').append(e.frontier).append(' ').append(e.terminals);
+                for (Map.Entry<String, long[]> f : e.files.entrySet()) {
+                    sb.append(' ').append(f.getKey());
+                    if (f.getValue()[2] >= 0) sb.append('@').append(f.getValue()[2]);
+                    sb.append(':').append(f.getValue()[0])
+                      .append(':').append(Long.toHexString(f.getValue()[1]));
+                }
+                sb.append('\n');
+            }
+            ByteBuffer bytes = ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.UTF_8));
+            while (bytes.hasRemaining()) ch.write(bytes);
+            ch.force(true);
+        }
+        move(tmp, file);
+    }
+
+    private static void force(Path path) throws IOException {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            ch.force(true);
+        }
+    }
+
+    private static void move(Path from, Path to) throws IOException {
+        try {
+            Files.move(from, to, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(from, to, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /** CRC32 of {@code bytes} bytes of {@code path} starting at {@code offset}. */
+    static long checksum(Path path, long offset, long bytes) throws IOException {
+        CRC32 crc = new CRC32();
+        ByteBuffer buf = ByteBuffer.allocateDirect(CHECKSUM_BUFFER_BYTES);
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            long end = offset + bytes;
+            for (long at = offset; at < end; ) {
+                buf.limit((int) Math.min(buf.capacity(), end - at));
+                int n = ch.read(buf, at);
+                if (n < 0) throw new IOException(path + " ends before byte " + end);
+                at += n;
+                buf.flip();
+                crc.update(buf);
+                buf.clear();
+            }
+        }
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,303 @@
+package precomputing.minimax;
+
+import game.Board;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Retrograde analysis over the files {@link GPUTimer} leaves behind.
+ * <p>
+ * For every depth d (stones on the board) the precompute writes the sorted,
+ * deduplicated non-terminal boards to {@code frontier_depth{d}.dat} and the
+ * terminal boards to {@code terminals_depth{d}_{X,O,TIE}.dat}. This solver walks
+ * the depths from 27 down to 0. Depth d is solved from depth d+1 alone: every
+ * frontier board is expanded, each child is looked up in the memory-mapped
+ * table of depth d+1, and the best child for the side to move is kept. The
+ * solved frontier is then merged with the terminal sets into
+ * {@code solved_depth{d}.dat} (sorted keys) and {@code solved_depth{d}_values.dat}
+ * (one packed short per key). Only two depths are open at a time and the
+ * frontier is streamed in blocks, so the heap footprint does not grow with the
+ * size of a depth.
+ * <p>
+ * Keys are the boards exactly as the expander emitted them, so a run with a
+ * canonical {@link ExpandAndClassify.SymmetryMode} is solved in the same mode and
+ * best moves are cell indices on the canonical board.
+ * <p>
+ * Value layout: outcome bits 0-1 ({@link #DRAW}, {@link #X_WINS}, {@link #O_WINS}),
+ * distance to the end of the game in plies bits 2-6, best move bits 7-11
+ * ({@link #NO_MOVE} for terminal positions).
+ */
+public class RetrogradeSolver {
+    public static final int DRAW = 0;
+    public static final int X_WINS = 1;
+    public static final int O_WINS = 2;
+    public static final int NO_MOVE = 31;
+
+    private static final int MAX_DEPTH = Board.CELLS;
+    private static final long CELL_MASK = Board.CELL_MASK;
+    private static final int BLOCK_BOARDS = 1 << 20;
+    private static final int IO_BUFFER_BYTES = 1 << 16;
+
+    private final Path dir;
+    private final ExpandAndClassify.SymmetryMode symmetry;
+    private final int dedupRunBoards;
+
+    /**
+     * @param dir            directory holding the frontier and terminal files; solved files are written here too
+     * @param symmetry       the mode the files were generated with
+     * @param dedupRunBoards in-memory run size used to sort the terminal files
+     */
+    public RetrogradeSolver(Path dir, ExpandAndClassify.SymmetryMode symmetry, int dedupRunBoards) {
+        this.dir = dir;
+        this.symmetry = symmetry;
+        this.dedupRunBoards = dedupRunBoards;
+    }
+
+    public static short pack(int outcome, int distance, int move) {
+        return (short) (outcome | (distance << 2) | ((move < 0 ? NO_MOVE : move) << 7));
+    }
+
+    public static int outcome(short value) {
+        return value & 0x3;
+    }
+
+    public static int distance(short value) {
+        return (value >>> 2) & 0x1F;
+    }
+
+    /** @return the best move, or -1 for a terminal position */
+    public static int move(short value) {
+        int m = (value >>> 7) & 0x1F;
+        return m == NO_MOVE ? -1 : m;
+    }
+
+    public static Path keysFile(Path dir, int depth) {
+        return dir.resolve("solved_depth" + depth + ".dat");
+    }
+
+    public static Path valuesFile(Path dir, int depth) {
+        return dir.resolve("solved_depth" + depth + "_values.dat");
+    }
+
+    /** Solves every depth, deepest first. */
+    public void solve() throws IOException {
+        for (int depth = MAX_DEPTH; depth >= 0; depth--) {
+            solveDepth(depth);
+        }
+    }
+
+    /**
+     * Solves one depth; depth + 1 must already be solved unless this is the last one.
+     *
+     * @return the number of positions written for this depth
+     */
+    public long solveDepth(int depth) throws IOException {
+        long start = System.currentTimeMillis();
+        Path frontierValues = dir.resolve("frontier_depth" + depth + "_values.tmp");
+        List<Path> temps = new ArrayList<>();
+        temps.add(frontierValues);
+        try {
+            Path frontier = frontierFile(depth);
+            solveFrontier(frontier, depth, frontierValues);
+
+            List<KeyStream> streams = new ArrayList<>();
+            streams.add(new KeyStream(frontier, frontierValues, (short) 0));
+            String[] suffixes = {"X", "O", "TIE"};
+            int[] outcomes = {X_WINS, O_WINS, DRAW};
+            for (int i = 0; i < suffixes.length; i++) {
+                Path terminals = dir.resolve("terminals_depth" + depth + "_" + suffixes[i] + ".dat");
+                if (!Files.exists(terminals)) continue;
+                Path sorted = dir.resolve("terminals_depth" + depth + "_" + suffixes[i] + ".sorted.tmp");
+                temps.add(sorted);
+                sortUnique(terminals, sorted);
+                streams.add(new KeyStream(sorted, null, pack(outcomes[i], 0, NO_MOVE)));
+            }
+
+            long[] byOutcome = new long[3];
+            long written = merge(streams, keysFile(dir, depth), valuesFile(dir, depth), byOutcome);
+            System.out.printf("Depth %d: %,d positions (X wins %,d, O wins %,d, draws %,d) in %,d ms%n",
+                    depth, written, byOutcome[X_WINS], byOutcome[O_WINS], byOutcome[DRAW],
+                    System.currentTimeMillis() - start);
+            return written;
+        } finally {
+            for (Path p : temps) Files.deleteIfExists(p);
+        }
+    }
+
+    /** The frontier of {@code depth}; the root is written on demand since the precompute keeps it in memory. */
+    private Path frontierFile(int depth) throws IOException {
+        Path file = dir.resolve("frontier_depth" + depth + ".dat");
+        if (depth == 0 && !Files.exists(file)) {
+            try (DataOutputStream out = open(file)) {
+                out.writeLong(CpuExpandAndClassify.emit(0L, symmetry));
+            }
+        }
+        return file;
+    }
+
+    private void solveFrontier(Path frontier, int depth, Path valuesOut) throws IOException {
+        long count = Files.exists(frontier) ? Files.size(frontier) / Long.BYTES : 0;
+        try (DataOutputStream out = open(valuesOut)) {
+            if (count == 0) return;
+            if (depth == MAX_DEPTH)
+                throw new IllegalStateException("Full boards cannot be frontier positions: " + frontier);
+            Path nextKeys = keysFile(dir, depth + 1);
+            Path nextValues = valuesFile(dir, depth + 1);
+            if (!SolvedTable.exists(nextKeys, nextValues))
+                throw new IllegalStateException("Depth " + (depth + 1) + " must be solved before depth " + depth);
+
+            try (SolvedTable next = new SolvedTable(nextKeys, nextValues);
+                 DataInputStream in = new DataInputStream(new BufferedInputStream(
+                         new FileInputStream(frontier.toFile()), IO_BUFFER_BYTES))) {
+                long[] keys = new long[(int) Math.min(BLOCK_BOARDS, count)];
+                short[] values = new short[keys.length];
+                for (long remaining = count; remaining > 0; ) {
+                    int n = (int) Math.min(keys.length, remaining);
+                    for (int i = 0; i < n; i++) keys[i] = in.readLong();
+                    IntStream.range(0, n).parallel()
+                            .forEach(i -> values[i] = solveBoard(keys[i], depth, next));
+                    for (int i = 0; i < n; i++) out.writeShort(values[i]);
+                    remaining -= n;
+                }
+            }
+        }
+    }
+
+    /** Best child of a frontier board for the side to move, looked up in the solved depth below. */
+    private short solveBoard(long key, int depth, SolvedTable next) {
+        long board = ExpandAndClassify.boardOf(key);
+        boolean xToMove = (depth & 1) == 0;
+        int moverShift = xToMove ? 0 : Board.O_SHIFT;
+        long empty = ~(board | (board >>> Board.O_SHIFT)) & CELL_MASK;
+        if (empty == 0) throw new IllegalStateException("Frontier board has no moves: " + Long.toHexString(key));
+
+        int bestRank = Integer.MIN_VALUE;
+        short best = 0;
+        while (empty != 0) {
+            int cell = Long.numberOfTrailingZeros(empty);
+            empty &= empty - 1;
+
+            long child = board | (1L << (cell + moverShift));
+            long index = next.find(CpuExpandAndClassify.emit(child, symmetry));
+            if (index < 0) {
+                throw new IllegalStateException(String.format(
+                        "Child %x of %x is missing from depth %d", child, board, depth + 1));
+            }
+            short v = next.value(index);
+            int rank = rank(v, xToMove);
+            if (rank > bestRank) {
+                bestRank = rank;
+                best = pack(outcome(v), distance(v) + 1, cell);
+            }
+        }
+        return best;
+    }
+
+    /** Orders values for the side to move: fast wins, then draws, then slow losses. */
+    private static int rank(short value, boolean xToMove) {
+        int outcome = outcome(value);
+        if (outcome == DRAW) return 0;
+        boolean moverWins = (outcome == X_WINS) == xToMove;
+        return moverWins ? 64 - distance(value) : distance(value) - 64;
+    }
+
+    /** Terminal files are appended per batch, so they may be unsorted and hold duplicates. */
+    private void sortUnique(Path in, Path out) throws IOException {
+        try (FrontierDeduplicator dedup = new FrontierDeduplicator(dir.resolve("retro_runs"), dedupRunBoards);
+             DataInputStream dis = new DataInputStream(new BufferedInputStream(
+                     new FileInputStream(in.toFile()), IO_BUFFER_BYTES))) {
+            for (long remaining = Files.size(in) / Long.BYTES; remaining > 0; remaining--) {
+                dedup.add(dis.readLong());
+            }
+            dedup.finish(out, null);
+        }
+    }
+
+    private static long merge(List<KeyStream> streams, Path keysOut, Path valuesOut, long[] byOutcome)
+            throws IOException {
+        long written = 0;
+        try (DataOutputStream keys = open(keysOut); DataOutputStream values = open(valuesOut)) {
+            for (KeyStream s : streams) s.advance();
+            while (true) {
+                KeyStream min = null;
+                for (KeyStream s : streams) {
+                    if (s.hasKey && (min == null || s.key < min.key)) min = s;
+                }
+                if (min == null) break;
+                for (KeyStream s : streams) {
+                    if (s != min && s.hasKey && s.key == min.key)
+                        throw new IllegalStateException("Board classified twice: " + Long.toHexString(min.key));
+                }
+                keys.writeLong(min.key);
+                values.writeShort(min.value);
+                byOutcome[outcome(min.value)]++;
+                written++;
+                min.advance();
+            }
+        } finally {
+            for (KeyStream s : streams) s.close();
+        }
+        return written;
+    }
+
+    private static DataOutputStream open(Path file) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(file.toFile()), IO_BUFFER_BYTES));
+    }
+
+    /** Sorted keys with either a parallel value file or one fixed value. */
+    private static class KeyStream implements Closeable {
+        final DataInputStream keys;
+        final DataInputStream values;
+        final short fixedValue;
+        long remaining;
+        boolean hasKey;
+        long key;
+        short value;
+
+        KeyStream(Path keysFile, Path valuesFile, short fixedValue) throws IOException {
+            boolean present = Files.exists(keysFile);
+            this.remaining = present ? Files.size(keysFile) / Long.BYTES : 0;
+            this.keys = present ? new DataInputStream(new BufferedInputStream(
+                    new FileInputStream(keysFile.toFile()), IO_BUFFER_BYTES)) : null;
+            this.values = valuesFile == null || !present ? null : new DataInputStream(new BufferedInputStream(
+                    new FileInputStream(valuesFile.toFile()), IO_BUFFER_BYTES));
+            this.fixedValue = fixedValue;
+        }
+
+        void advance() throws IOException {
+            hasKey = remaining > 0;
+            if (!hasKey) return;
+            key = keys.readLong();
+            value = values != null ? values.readShort() : fixedValue;
+            remaining--;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (keys != null) keys.close();
+            if (values != null) values.close();
+        }
+    }
+
+    public static void main(String[] args) {
+        Path dir = Paths.get(args.length > 0 ? args[0] : GPUTimer.OUTPUT_DIR);
+        try {
+            new RetrogradeSolver(dir, GPUTimer.SYMMETRY, GPUTimer.DEDUP_RUN_BOARDS).solve();
+            try (SolvedTable root = new SolvedTable(keysFile(dir, 0), valuesFile(dir, 0))) {
+                short v = root.value(0);
+                String[] names = {"Draw", "X wins", "O wins"};
+                System.out.printf("Root: %s in %d plies, best move %d%n", names[outcome(v)], distance(v), move(v));
+            }
+        } catch (IOException e) {
+            System.err.println("Retrograde analysis failed: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package precomputing.minimax;
+
+import support.MappedLongFile;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read-only view of one solved depth: a sorted file of board keys and a
+ * parallel file of packed values, both memory-mapped so only the pages that
+ * lookups touch are resident. Each file is a single {@link MemorySegment}
+ * addressed with 64-bit offsets, however large it is.
+ */
+class SolvedTable implements Closeable {
+    private static final ValueLayout.OfShort VALUE_LAYOUT = ValueLayout.JAVA_SHORT.withOrder(ByteOrder.BIG_ENDIAN);
+
+    private final Arena arena = Arena.ofShared();
+    private final MemorySegment keys;
+    private final MemorySegment values;
+    private final long size;
+
+    SolvedTable(Path keysFile, Path valuesFile) throws IOException {
+        try (FileChannel keyChannel = FileChannel.open(keysFile, StandardOpenOption.READ);
+             FileChannel valueChannel = FileChannel.open(valuesFile, StandardOpenOption.READ)) {
+            this.size = keyChannel.size() / Long.BYTES;
+            if (valueChannel.size() / Short.BYTES != size)
+                throw new IOException("Key and value files differ in length: " + keysFile + ", " + valuesFile);
+
+            // The mappings outlive the channels; they stay valid until the arena closes
+            keys = keyChannel.map(FileChannel.MapMode.READ_ONLY, 0, size * Long.BYTES, arena);
+            values = valueChannel.map(FileChannel.MapMode.READ_ONLY, 0, size * Short.BYTES, arena);
+        } catch (IOException | RuntimeException e) {
+            arena.close();
+            throw e;
+        }
+    }
+
+    /** Whether both files of a solved depth are present. */
+    static boolean exists(Path keysFile, Path valuesFile) {
+        return Files.exists(keysFile) && Files.exists(valuesFile);
+    }
+
+    long size() {
+        return size;
+    }
+
+    long key(long index) {
+        return keys.getAtIndex(MappedLongFile.LAYOUT, index);
+    }
+
+    short value(long index) {
+        return values.getAtIndex(VALUE_LAYOUT, index);
+    }
+
+    /** @return the index of {@code key}, or -1 if it is not in the table */
+    long find(long key) {
+        long lo = 0, hi = size - 1;
+        while (lo <= hi) {
+            long mid = (lo + hi) >>> 1;
+            long k = key(mid);
+            if (k < key) lo = mid + 1;
+            else if (k > key) hi = mid - 1;
+            else return mid;
+        }
+        return -1;
+    }
+
+    @Override
+    public void close() {
+        arena.close();
+    }
+}
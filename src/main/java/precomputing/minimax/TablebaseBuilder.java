@@ -0,0 +1,97 @@
+package precomputing.minimax;
+
+import game.Board;
+import game.Canonicalizer;
+import game.Tablebase;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Packs the per-depth output of {@link RetrogradeSolver} into one {@link Tablebase}.
+ * <p>
+ * Solved keys are sorted within a depth but carry the class-size tag in their
+ * high bits, and boards from all depths share one key space. Each entry is
+ * therefore folded into a single sortable long, {@code board << 8 | valueByte},
+ * and the lot is put through {@link FrontierDeduplicator}, which yields the
+ * records in board order ready for {@link Tablebase.Writer}. Runs generated
+ * without symmetry keep only the canonical member of each class.
+ */
+public class TablebaseBuilder {
+    private static final int IO_BUFFER_BYTES = 1 << 16;
+
+    private final Path dir;
+    private final int runBoards;
+
+    /**
+     * @param dir       directory holding the solved_depth files
+     * @param runBoards in-memory run size for the sort
+     */
+    public TablebaseBuilder(Path dir, int runBoards) {
+        this.dir = dir;
+        this.runBoards = runBoards;
+    }
+
+    /** @return the number of positions written */
+    public long build(Path out) throws IOException {
+        Path sorted = dir.resolve("tablebase_records.tmp");
+        try {
+            try (FrontierDeduplicator records = new FrontierDeduplicator(dir.resolve("tablebase_runs"), runBoards)) {
+                for (int depth = 0; depth <= Board.CELLS; depth++) {
+                    addDepth(depth, records);
+                }
+                records.finish(sorted, null);
+            }
+
+            try (Tablebase.Writer writer = new Tablebase.Writer(out);
+                 DataInputStream in = new DataInputStream(new BufferedInputStream(
+                         new FileInputStream(sorted.toFile()), IO_BUFFER_BYTES))) {
+                for (long n = Files.size(sorted) / Long.BYTES; n > 0; n--) {
+                    long record = in.readLong();
+                    int value = (int) record & 0xFF;
+                    writer.add(record >>> 8, value & 0x3, value >>> 2 == Tablebase.NO_MOVE ? -1 : value >>> 2);
+                }
+                return writer.count();
+            }
+        } finally {
+            Files.deleteIfExists(sorted);
+        }
+    }
+
+    private void addDepth(int depth, FrontierDeduplicator records) throws IOException {
+        Path keysFile = RetrogradeSolver.keysFile(dir, depth);
+        Path valuesFile = RetrogradeSolver.valuesFile(dir, depth);
+        if (!Files.exists(keysFile)) return;
+
+        try (DataInputStream keys = new DataInputStream(new BufferedInputStream(
+                     new FileInputStream(keysFile.toFile()), IO_BUFFER_BYTES));
+             DataInputStream values = new DataInputStream(new BufferedInputStream(
+                     new FileInputStream(valuesFile.toFile()), IO_BUFFER_BYTES))) {
+            for (long n = Files.size(keysFile) / Long.BYTES; n > 0; n--) {
+                long board = ExpandAndClassify.boardOf(keys.readLong());
+                short value = values.readShort();
+                if (Canonicalizer.canonical(board) != board) continue;
+
+                int move = RetrogradeSolver.move(value);
+                int packed = RetrogradeSolver.outcome(value) | ((move < 0 ? Tablebase.NO_MOVE : move) << 2);
+                records.add((board << 8) | packed);
+            }
+        }
+    }
+
+    public static void main(String[] args) {
+        Path dir = Paths.get(args.length > 0 ? args[0] : GPUTimer.OUTPUT_DIR);
+        Path out = args.length > 1 ? Paths.get(args[1]) : Paths.get(Tablebase.DEFAULT_PATH);
+        try {
+            long start = System.currentTimeMillis();
+            long n = new TablebaseBuilder(dir, GPUTimer.DEDUP_RUN_BOARDS).build(out);
+            System.out.printf("Wrote %,d positions to %s (%,d bytes) in %,d ms%n",
+                    n, out, Files.size(out), System.currentTimeMillis() - start);
+        } catch (IOException e) {
+            System.err.println("Tablebase build failed: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package support;
+
+import org.jocl.*;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static org.jocl.CL.*;
+
+/**
+ * Long-lived device buffers and pinned host staging buffers, handed out by
+ * power-of-two size class and returned for reuse instead of being released.
+ * <p>
+ * Pinned buffers are created with {@code CL_MEM_ALLOC_HOST_PTR} and stay mapped
+ * for their whole life, so the host writes batches straight into memory the
+ * driver can DMA from, and reads results from memory the driver DMAs into.
+ * Not thread-safe; one pool belongs to one expander.
+ */
+public class CLBufferPool implements Closeable {
+    private static final long MIN_CLASS_BYTES = 64;
+
+    /** A pinned allocation and its persistent host mapping (native byte order). */
+    public static class Pinned {
+        public final cl_mem mem;
+        public final ByteBuffer host;
+
+        Pinned(cl_mem mem, ByteBuffer host) {
+            this.mem = mem;
+            this.host = host;
+        }
+    }
+
+    private final CLContext cl;
+    private final Map<Long, ArrayDeque<cl_mem>> freeDevice = new HashMap<>();
+    private final Map<Long, ArrayDeque<Pinned>> freePinned = new HashMap<>();
+    private final Map<cl_mem, Long> deviceClass = new IdentityHashMap<>();
+    private final Map<Pinned, Long> pinnedClass = new IdentityHashMap<>();
+
+    private long created;
+    private long reused;
+    private long pinnedBytes;
+
+    public CLBufferPool(CLContext cl) {
+        this.cl = cl;
+    }
+
+    /** A device-only read/write buffer of at least {@code bytes}. */
+    public cl_mem acquire(long bytes) {
+        long cls = sizeClass(bytes, cl.maxAllocBytes);
+        cl_mem mem = poll(freeDevice, cls);
+        if (mem == null) {
+            mem = allocate(() -> clCreateBuffer(cl.ctx, CL_MEM_READ_WRITE, cls, null, null));
+            created++;
+        } else {
+            reused++;
+        }
+        deviceClass.put(mem, cls);
+        return mem;
+    }
+
+    public void release(cl_mem mem) {
+        Long cls = deviceClass.remove(mem);
+        if (cls == null) throw new IllegalArgumentException("Buffer was not acquired from this pool");
+        freeDevice.computeIfAbsent(cls, c -> new ArrayDeque<>()).push(mem);
+    }
+
+    /** A pinned host buffer of at least {@code bytes}, mapped for reading and writing. */
+    public Pinned acquirePinned(long bytes) {
+        long cls = sizeClass(bytes, Math.min(cl.maxAllocBytes, Integer.MAX_VALUE));
+        Pinned p = poll(freePinned, cls);
+        if (p == null) {
+            cl_mem mem = allocate(() -> clCreateBuffer(cl.ctx, CL_MEM_READ_WRITE | CL_MEM_ALLOC_HOST_PTR, cls, null, null));
+            ByteBuffer host = clEnqueueMapBuffer(cl.queue, mem, CL_TRUE, CL_MAP_READ | CL_MAP_WRITE,
+                    0, cls, 0, null, null, null);
+            p = new Pinned(mem, host.order(ByteOrder.nativeOrder()));
+            created++;
+            pinnedBytes += cls;
+        } else {
+            reused++;
+        }
+        p.host.clear();
+        pinnedClass.put(p, cls);
+        return p;
+    }
+
+    public void release(Pinned p) {
+        Long cls = pinnedClass.remove(p);
+        if (cls == null) throw new IllegalArgumentException("Buffer was not acquired from this pool");
+        freePinned.computeIfAbsent(cls, c -> new ArrayDeque<>()).push(p);
+    }
+
+    /** Buffers allocated from the driver so far. */
+    public long createdCount() {
+        return created;
+    }
+
+    /** Acquisitions served from an idle buffer. */
+    public long reusedCount() {
+        return reused;
+    }
+
+    /** Pinned host memory allocated from the driver and not yet freed, idle or acquired. */
+    public long pinnedBytes() {
+        return pinnedBytes;
+    }
+
+    /** Frees every idle buffer; buffers still acquired are unaffected. */
+    public void trim() {
+        for (ArrayDeque<cl_mem> q : freeDevice.values()) {
+            for (cl_mem m : q) clReleaseMemObject(m);
+        }
+        freeDevice.clear();
+        for (Map.Entry<Long, ArrayDeque<Pinned>> q : freePinned.entrySet()) {
+            for (Pinned p : q.getValue()) unmapAndRelease(p, q.getKey());
+        }
+        freePinned.clear();
+    }
+
+    @Override
+    public void close() {
+        trim();
+        for (cl_mem m : deviceClass.keySet()) clReleaseMemObject(m);
+        deviceClass.clear();
+        for (Map.Entry<Pinned, Long> p : pinnedClass.entrySet()) unmapAndRelease(p.getKey(), p.getValue());
+        pinnedClass.clear();
+    }
+
+    private void unmapAndRelease(Pinned p, long cls) {
+        clEnqueueUnmapMemObject(cl.queue, p.mem, p.host, 0, null, null);
+        clFinish(cl.queue);
+        clReleaseMemObject(p.mem);
+        pinnedBytes -= cls;
+    }
+
+    /** Retries once after freeing idle buffers when the device is out of memory. */
+    private cl_mem allocate(Supplier<cl_mem> create) {
+        try {
+            return create.get();
+        } catch (CLException e) {
+            if (e.getStatus() != CL_MEM_OBJECT_ALLOCATION_FAILURE && e.getStatus() != CL_OUT_OF_RESOURCES) throw e;
+            trim();
+            return create.get();
+        }
+    }
+
+    private static <T> T poll(Map<Long, ArrayDeque<T>> free, long cls) {
+        ArrayDeque<T> q = free.get(cls);
+        return q == null ? null : q.poll();
+    }
+
+    /** Next power of two at or above {@code bytes}, capped at {@code limit}. */
+    public static long sizeClass(long bytes, long limit) {
+        if (bytes > limit) throw new IllegalArgumentException(bytes + " bytes exceeds the allocation limit of " + limit);
+        long cls = bytes <= MIN_CLASS_BYTES ? MIN_CLASS_BYTES : Long.highestOneBit(bytes - 1) << 1;
+        return Math.min(cls, limit);
+    }
+}
@@ -1,20 +1,26 @@
 package support;
 
+import game.Canonicalizer;
+import game.WinLines;
 import org.jocl.*;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.util.List;
 
 import static org.jocl.CL.*;
 
 public class CLContext {
     public final cl_context       ctx;
+    /** Kernel launches. */
     public final cl_command_queue queue;
+    /** Host-to-device copies, so the next batch uploads while the current one runs. */
+    public final cl_command_queue uploadQueue;
+    /** Device-to-host copies, so results drain while the next kernel runs. */
+    public final cl_command_queue readQueue;
     public final cl_program       program;
     public final cl_kernel        kernel;
+    /** Canonicalizer's per-layer lookup tables, passed to the kernels that canonicalize. */
+    public final cl_mem           symTables;
 
     public final long totalMemBytes;
     public final long maxAllocBytes;
@@ -64,9 +70,11 @@ public class CLContext {
         System.out.printf("  VRAM = %,d MB; max single alloc = %,d MB%n",
                 totalMemBytes/(1024*1024), maxAllocBytes/(1024*1024));
 
-        // 3) Create context & queue
-        ctx   = clCreateContext(null, 1, new cl_device_id[]{selected}, null, null, null);
-        queue = clCreateCommandQueue(ctx, selected, 0, null);
+        // 3) Create context & queues (compute, upload, readback)
+        ctx         = clCreateContext(null, 1, new cl_device_id[]{selected}, null, null, null);
+        queue       = createQueue(ctx, selected);
+        uploadQueue = createQueue(ctx, selected);
+        readQueue   = createQueue(ctx, selected);
 
         // 4) Load kernel source from classpath
         String kernelSrc;
@@ -80,22 +88,9 @@ public class CLContext {
             kernelSrc = new String(bytes, StandardCharsets.UTF_8);
         }
 
-        // 5) Read winLines.txt (space-separated indices) into masks[]
-        List<String> lines = Files.readAllLines(
-                Paths.get("C:\\Users\\webbometric\\Documents\\GitHub\\3DTicTacToe\\src\\main\\data\\winLines.txt"),
-                StandardCharsets.UTF_8
-        );
-        int    N   = lines.size();
-        long[] masks = new long[N];
-        for (int i = 0; i < N; i++) {
-            String[] parts = lines.get(i).trim().split("\\s+");
-            long m = 0L;
-            for (String p : parts) {
-                int idx = Integer.parseInt(p);
-                m |= (1L << idx);
-            }
-            masks[i] = m;
-        }
+        // 5) Winning lines as cell masks
+        long[] masks = WinLines.MASKS;
+        int    N     = masks.length;
 
         // 6) Build header with WIN_MASKS[N]
         StringBuilder header = new StringBuilder();
@@ -108,6 +103,38 @@ public class CLContext {
         }
         header.append("};\n\n");
 
+        // 6a) Lines through each cell, so a move is only checked against the lines it can complete
+        int[] cellLineCount = new int[27];
+        for (long m : masks) {
+            for (int c = 0; c < 27; c++) if ((m >>> c & 1) != 0) cellLineCount[c]++;
+        }
+        int maxCellLines = 0;
+        for (int n : cellLineCount) maxCellLines = Math.max(maxCellLines, n);
+        header.append("#define MAX_CELL_LINES ").append(maxCellLines).append("\n");
+        header.append("__constant uchar CELL_LINE_COUNT[27] = {");
+        for (int c = 0; c < 27; c++) header.append(cellLineCount[c]).append(c + 1 < 27 ? "," : "");
+        header.append("};\n");
+        header.append("__constant ulong CELL_LINES[").append(27 * maxCellLines).append("] = {");
+        for (int c = 0; c < 27; c++) {
+            int n = 0;
+            for (long m : masks) {
+                if ((m >>> c & 1) == 0) continue;
+                header.append("0x").append(Long.toHexString(m)).append("UL,");
+                n++;
+            }
+            for (; n < maxCellLines; n++) header.append("0UL,");
+        }
+        header.setLength(header.length() - 1);
+        header.append("};\n\n");
+
+        // 6b) Cube symmetries: 48 * 3 * 512 table entries are too many for constant memory,
+        //     so they go to the kernels as a read-only buffer
+        header.append("#define SYM_COUNT ").append(Canonicalizer.GROUP_SIZE).append("\n");
+        header.append("#define SYM_LAYER_PATTERNS ").append(Canonicalizer.LAYER_PATTERNS).append("\n\n");
+        int[] tables = Canonicalizer.layerTables();
+        symTables = clCreateBuffer(ctx, CL_MEM_READ_ONLY | CL_MEM_COPY_HOST_PTR,
+                (long) tables.length * Sizeof.cl_uint, Pointer.to(tables), null);
+
         // 7) Compile with injected header
         String fullSrc = header + kernelSrc;
         program = clCreateProgramWithSource(ctx, 1, new String[]{ fullSrc }, null, null);
@@ -117,6 +144,20 @@ public class CLContext {
         kernel = clCreateKernel(program, "expand_and_classify", null);
     }
 
+    /** Another kernel from the same program, e.g. an alternative variant in the source file. */
+    public cl_kernel createKernel(String function) {
+        return clCreateKernel(program, function, null);
+    }
+
+    /**
+     * An in-order queue. clCreateCommandQueue is deprecated since OpenCL 2.0, but
+     * its replacement is missing from 1.2 platforms, which still have to run this.
+     */
+    @SuppressWarnings("deprecation")
+    private static cl_command_queue createQueue(cl_context ctx, cl_device_id device) {
+        return clCreateCommandQueue(ctx, device, 0, null);
+    }
+
     /** Helper to query device name */
     private static String deviceName(cl_device_id d) {
         byte[] buf = new byte[1024];
@@ -0,0 +1,157 @@
+package support;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A growable list of longs held off the Java heap, indexed with 64-bit
+ * positions, for frontiers of billions of boards.
+ * <p>
+ * The store starts in native memory and doubles as it grows. Once it would
+ * pass its memory limit it moves into a mapped temporary file in the spill
+ * directory and keeps growing there, so callers never see the switch. Memory
+ * and the spill file are released by {@link #close}, not by the garbage
+ * collector. Values are kept in native byte order; {@link MappedLongFile} is
+ * the type for files other code reads. Not thread-safe.
+ */
+public class LongStore implements Closeable {
+    private static final ValueLayout.OfLong LAYOUT = ValueLayout.JAVA_LONG;
+    private static final long MIN_CAPACITY_BYTES = 1L << 20;
+
+    private final Path spillDir;
+    private final long memoryLimitBytes;
+    private Arena arena;
+    private MemorySegment segment = MemorySegment.NULL;
+    private FileChannel spillChannel;
+    private Path spillFile;
+    private long size;
+
+    /**
+     * @param spillDir         where the backing file goes once the store outgrows memory
+     * @param memoryLimitBytes native memory the store may use before it spills
+     */
+    public LongStore(Path spillDir, long memoryLimitBytes) {
+        this.spillDir = spillDir;
+        this.memoryLimitBytes = memoryLimitBytes;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /** Whether the contents have moved to a mapped file. */
+    public boolean isSpilled() {
+        return spillChannel != null;
+    }
+
+    public long get(long index) {
+        return segment.getAtIndex(LAYOUT, checkIndex(index));
+    }
+
+    public void add(long value) throws IOException {
+        ensureCapacity(size + 1);
+        segment.setAtIndex(LAYOUT, size++, value);
+    }
+
+    public void addAll(long[] src, int offset, int count) throws IOException {
+        ensureCapacity(size + count);
+        MemorySegment.copy(src, offset, segment, LAYOUT, size * Long.BYTES, count);
+        size += count;
+    }
+
+    /** Appends and consumes the remaining longs of {@code src}, swapping bytes if its order differs. */
+    public void addAll(LongBuffer src) throws IOException {
+        int count = src.remaining();
+        addAll(MemorySegment.ofBuffer(src), ValueLayout.JAVA_LONG.withOrder(src.order()), count);
+        src.position(src.limit());
+    }
+
+    /** Appends {@code count} longs laid out as {@code srcLayout} at the start of {@code src}. */
+    public void addAll(MemorySegment src, ValueLayout.OfLong srcLayout, long count) throws IOException {
+        ensureCapacity(size + count);
+        MemorySegment.copy(src, srcLayout, 0, segment, LAYOUT, size * Long.BYTES, count);
+        size += count;
+    }
+
+    /** Copies {@code count} longs starting at {@code index} into {@code dst}. */
+    public void get(long index, long[] dst, int offset, int count) {
+        if (count > 0) checkIndex(index + count - 1);
+        MemorySegment.copy(segment, LAYOUT, index * Long.BYTES, dst, offset, count);
+    }
+
+    /** A view of {@code count} longs from {@code index}, valid until the store next grows or is closed. */
+    public MemorySegment slice(long index, long count) {
+        if (count > 0) checkIndex(index + count - 1);
+        return segment.asSlice(index * Long.BYTES, count * Long.BYTES);
+    }
+
+    /** Empties the store but keeps its memory for reuse. */
+    public void clear() {
+        size = 0;
+    }
+
+    /** Frees the memory and deletes the spill file. The store is empty and usable afterwards. */
+    @Override
+    public void close() throws IOException {
+        release();
+        segment = MemorySegment.NULL;
+        size = 0;
+    }
+
+    private void release() throws IOException {
+        if (arena != null) arena.close();
+        arena = null;
+        if (spillChannel != null) {
+            spillChannel.close();
+            Files.deleteIfExists(spillFile);
+            spillChannel = null;
+            spillFile = null;
+        }
+    }
+
+    private long checkIndex(long index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException("Index " + index + " of " + size);
+        return index;
+    }
+
+    private void ensureCapacity(long longs) throws IOException {
+        long bytes = longs * Long.BYTES;
+        if (bytes <= segment.byteSize()) return;
+        long capacity = Math.max(MIN_CAPACITY_BYTES, segment.byteSize());
+        while (capacity < bytes) capacity <<= 1;
+
+        Arena next = Arena.ofShared();
+        if (isSpilled()) {
+            // Growing in place: the data stays in the file, only the mapping is replaced
+            arena.close();
+            arena = next;
+            segment = spillChannel.map(FileChannel.MapMode.READ_WRITE, 0, capacity, next);
+            return;
+        }
+        MemorySegment grown;
+        if (capacity <= memoryLimitBytes) {
+            grown = next.allocate(capacity, LAYOUT.byteAlignment());
+        } else {
+            Files.createDirectories(spillDir);
+            spillFile = Files.createTempFile(spillDir, "longstore", ".dat");
+            spillChannel = FileChannel.open(spillFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            grown = spillChannel.map(FileChannel.MapMode.READ_WRITE, 0, capacity, next);
+        }
+        MemorySegment.copy(segment, 0, grown, 0, size * Long.BYTES);
+        if (arena != null) arena.close();
+        arena = next;
+        segment = grown;
+    }
+}
@@ -0,0 +1,130 @@
+package support;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A file of big-endian longs (the layout {@code DataOutputStream} writes),
+ * mapped as one {@link MemorySegment} with 64-bit offsets, so files past the
+ * 2 GB limit of a {@code MappedByteBuffer} need no paging.
+ * <p>
+ * A writable file keeps a logical size separate from its mapped capacity:
+ * appends past the capacity remap it at twice the size, and {@link #close}
+ * trims the file back to the logical size. All transfers are bulk segment
+ * copies, with the byte swap done inside the copy.
+ */
+public class MappedLongFile implements Closeable {
+    public static final ValueLayout.OfLong LAYOUT = ValueLayout.JAVA_LONG.withOrder(ByteOrder.BIG_ENDIAN);
+    private static final long MIN_CAPACITY_BYTES = 1L << 26; // 64 MB
+
+    private final FileChannel channel;
+    private final boolean writable;
+    private Arena arena;
+    private MemorySegment segment;
+    private long size;
+
+    private MappedLongFile(Path path, boolean writable) throws IOException {
+        this.writable = writable;
+        this.channel = writable
+                ? FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(path, StandardOpenOption.READ);
+        this.size = channel.size() / Long.BYTES;
+        map(channel.size());
+    }
+
+    /** Maps an existing file for reading. */
+    public static MappedLongFile openReadOnly(Path path) throws IOException {
+        return new MappedLongFile(path, false);
+    }
+
+    /** Maps a file for appending after its current contents, creating it if needed. */
+    public static MappedLongFile openReadWrite(Path path) throws IOException {
+        return new MappedLongFile(path, true);
+    }
+
+    /** Number of longs in the file. */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Moves the end of the file back to {@code size} longs; later appends
+     * overwrite whatever was past it.
+     */
+    public void truncate(long size) {
+        if (size < 0 || size > this.size) throw new IllegalArgumentException("Cannot truncate " + this.size + " longs to " + size);
+        this.size = size;
+    }
+
+    public long get(long index) {
+        return segment.getAtIndex(LAYOUT, index);
+    }
+
+    /** Copies {@code count} longs starting at {@code index} into {@code dst}. */
+    public void read(long index, long[] dst, int offset, int count) {
+        MemorySegment.copy(segment, LAYOUT, index * Long.BYTES, dst, offset, count);
+    }
+
+    /** A view of {@code count} longs from {@code index}, laid out as {@link #LAYOUT}, valid until the file grows or closes. */
+    public MemorySegment slice(long index, long count) {
+        return segment.asSlice(index * Long.BYTES, count * Long.BYTES);
+    }
+
+    public void append(long[] src, int offset, int count) throws IOException {
+        ensureCapacity(size + count);
+        MemorySegment.copy(src, offset, segment, LAYOUT, size * Long.BYTES, count);
+        size += count;
+    }
+
+    /** Appends the remaining longs of {@code src}, in whatever byte order it has, and consumes them. */
+    public void append(LongBuffer src) throws IOException {
+        int count = src.remaining();
+        ensureCapacity(size + count);
+        ValueLayout.OfLong srcLayout = ValueLayout.JAVA_LONG.withOrder(src.order());
+        MemorySegment.copy(MemorySegment.ofBuffer(src), srcLayout, 0, segment, LAYOUT, size * Long.BYTES, count);
+        src.position(src.limit());
+        size += count;
+    }
+
+    /** Flushes written pages to the device. */
+    public void force() {
+        if (writable) segment.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            force();
+            arena.close();
+            if (writable) channel.truncate(size * Long.BYTES);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void ensureCapacity(long longs) throws IOException {
+        if (!writable) throw new IllegalStateException("File is mapped read-only");
+        long bytes = longs * Long.BYTES;
+        if (bytes <= segment.byteSize()) return;
+        long capacity = Math.max(MIN_CAPACITY_BYTES, segment.byteSize());
+        while (capacity < bytes) capacity <<= 1;
+
+        segment.force();
+        arena.close();
+        map(capacity);
+    }
+
+    private void map(long bytes) throws IOException {
+        arena = Arena.ofShared();
+        FileChannel.MapMode mode = writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY;
+        segment = channel.map(mode, 0, bytes, arena);
+    }
+}
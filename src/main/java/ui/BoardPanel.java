@@ -103,7 +103,7 @@ public class BoardPanel extends JPanel {
             for (int row = 0; row < 3; row++) {
                 for (int col = 0; col < 3; col++) {
                     int index = Board.toIndex(col, row, level);
-                    char symbol = game.getBoard().board.charAt(index);
+                    char symbol = game.getBoard().board().charAt(index);
                     if (symbol != ' ') {
                         // Draw the player's mark.
                         if (Character.toLowerCase(symbol) == 'x') {
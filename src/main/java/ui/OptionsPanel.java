@@ -4,7 +4,10 @@ package ui;
 import game.Board;
 import game.Game;
 import players.HumanPlayer;
+import players.MinimaxPlayer;
 import players.NeuralNetworkPlayer;
+import players.Player;
+import players.TablebasePlayer;
 
 import javax.swing.*;
 import java.awt.*;
@@ -21,7 +24,7 @@ public class OptionsPanel extends JPanel {
     private final JButton nextButton;
     private final JLabel currentMoveLabel;
 
-    private final String[] playerOptions = { "Human", "NeuralNet" };
+    private final String[] playerOptions = { "Human", "NeuralNet", "Minimax", "Tablebase" };
 
     public OptionsPanel(Game game, BoardPanel boardPanel, EvaluationPanel evalPanel) {
         this.game       = game;
@@ -50,11 +53,7 @@ public class OptionsPanel extends JPanel {
         player1ComboBox.setMaximumSize(new Dimension(120, 25));
         player1ComboBox.addActionListener(e -> {
             String sel = (String) player1ComboBox.getSelectedItem();
-            if ("Human".equals(sel)) {
-                game.setPlayerX(new HumanPlayer(Board.Player.X));
-            } else {
-                game.setPlayerX(new NeuralNetworkPlayer(Board.Player.X));
-            }
+            game.setPlayerX(createPlayer(sel, Board.Player.X));
             updateCurrentMoveLabel();
         });
         add(player1ComboBox);
@@ -66,11 +65,7 @@ public class OptionsPanel extends JPanel {
         player2ComboBox.setMaximumSize(new Dimension(120, 25));
         player2ComboBox.addActionListener(e -> {
             String sel = (String) player2ComboBox.getSelectedItem();
-            if ("Human".equals(sel)) {
-                game.setPlayerO(new HumanPlayer(Board.Player.O));
-            } else {
-                game.setPlayerO(new NeuralNetworkPlayer(Board.Player.O));
-            }
+            game.setPlayerO(createPlayer(sel, Board.Player.O));
             updateCurrentMoveLabel();
         });
         add(player2ComboBox);
@@ -94,6 +89,14 @@ public class OptionsPanel extends JPanel {
         updateControlButtons();
     }
 
+    /** Build the player chosen in a selector. */
+    private static Player createPlayer(String sel, Board.Player symbol) {
+        if ("NeuralNet".equals(sel)) return new NeuralNetworkPlayer(symbol);
+        if ("Minimax".equals(sel))   return new MinimaxPlayer(symbol);
+        if ("Tablebase".equals(sel)) return new TablebasePlayer(symbol);
+        return new HumanPlayer(symbol);
+    }
+
     /** Refresh the “Current Move” label. */
     public void updateCurrentMoveLabel() {
         currentMoveLabel.setText("Current Move: " + game.currentPlayer.getSymbol());
@@ -108,7 +111,7 @@ public class OptionsPanel extends JPanel {
         boolean bothAI = !(game.getPlayerX() instanceof HumanPlayer)
                 && !(game.getPlayerO() instanceof HumanPlayer);
         boolean firstAINow = !game.isFirstMoveDone()
-                && (game.currentPlayer instanceof NeuralNetworkPlayer);
+                && !(game.currentPlayer instanceof HumanPlayer);
         nextButton.setEnabled(bothAI || firstAINow);
     }
 }
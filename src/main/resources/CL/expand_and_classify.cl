@@ -1,6 +1,42 @@
 #pragma OPENCL EXTENSION cl_khr_int64_base_atomics : enable
 
-// WIN_MASKS[] injected by CLContext
+// WIN_MASKS[], CELL_LINES[], SYM_COUNT and SYM_LAYER_PATTERNS injected by CLContext.
+// symTables is Canonicalizer's per-layer lookup tables: entry
+// (t*3 + layer)*SYM_LAYER_PATTERNS + pattern is the image under transform t
+// of the cells of that 9-cell layer set in pattern.
+
+// symMode: 0 = emit boards as played
+//          1 = emit the canonical board under the cube symmetry group
+//          2 = as 1, with the symmetry class size in bits 58-63
+#define SYM_NONE            0
+#define SYM_CANONICAL       1
+#define SYM_WITH_CLASS_SIZE 2
+#define TAG_SHIFT           58
+
+// Image of 27 cells under the transform whose tables start at table, one layer at a time.
+inline ulong permute_cells(ulong cells, __global const uint* table) {
+    return table[cells & 511]
+         | table[SYM_LAYER_PATTERNS + ((cells >> 9) & 511)]
+         | table[2 * SYM_LAYER_PATTERNS + (cells >> 18)];
+}
+
+// Smallest image of board over the group; optionally tagged with its class size.
+inline ulong canonicalize(ulong board, uint symMode, __global const uint* symTables) {
+    ulong x = board & 0x7FFFFFFUL;
+    ulong o = (board >> 27) & 0x7FFFFFFUL;
+    ulong best = board;
+    uint stabilizer = 1;
+    for (uint t = 1; t < SYM_COUNT; t++) {
+        __global const uint* table = symTables + t * 3 * SYM_LAYER_PATTERNS;
+        ulong image = permute_cells(x, table) | (permute_cells(o, table) << 27);
+        if (image < best) best = image;
+        if (image == board) stabilizer++;
+    }
+    if (symMode == SYM_WITH_CLASS_SIZE) {
+        best |= (ulong)(SYM_COUNT / stabilizer) << TAG_SHIFT;
+    }
+    return best;
+}
 
 __kernel void expand_and_classify(
     __global const ulong*  inBoards,
@@ -21,7 +57,10 @@ __kernel void expand_and_classify(
 
     // Tie (full board)
     __global ulong*        outTermTie,
-    __global atomic_ulong* termTieIdx
+    __global atomic_ulong* termTieIdx,
+
+    const uint             symMode,
+    __global const uint*   symTables
 ) {
     uint gid      = get_global_id(0);
     uint bIdx     = gid / 27;
@@ -46,6 +85,8 @@ __kernel void expand_and_classify(
     ulong newX     = isXturn ? newCurr : xBits;
     ulong newO     = isXturn ? oBits    : newCurr;
     ulong newBoard = newX | (newO << 27);
+    // Win/draw classification is symmetric, so only the emitted form changes.
+    if (symMode != SYM_NONE) newBoard = canonicalize(newBoard, symMode, symTables);
 
     // 1) check two 3-in-a-rows → X-win or O-win
     uint winX = 0, winO = 0;
@@ -75,3 +116,223 @@ __kernel void expand_and_classify(
     ulong fpos = atom_inc((__global volatile ulong*)frontierIdx);
     outFrontier[fpos] = newBoard;
 }
+
+// ---------------------------------------------------------------------------
+// Work-group-aggregated variant
+// ---------------------------------------------------------------------------
+
+#define COMPACT_WG   128   // must match the local size ExpandAndClassify launches with
+#define OUT_FRONTIER 0
+#define OUT_X        1
+#define OUT_O        2
+#define OUT_TIE      3
+#define OUT_NONE     4
+#define OUTPUTS      4
+
+// Puts the mover's stone on cell and classifies the child, exactly as
+// expand_and_classify does. The emitted form goes to *child.
+inline uint classify_child(ulong xBits, ulong oBits, bool isXturn, uint cell,
+                           uint symMode, __global const uint* symTables, ulong* child) {
+    ulong mask = 1UL << cell;
+    ulong newX = isXturn ? (xBits | mask) : xBits;
+    ulong newO = isXturn ? oBits : (oBits | mask);
+    ulong newBoard = newX | (newO << 27);
+    if (symMode != SYM_NONE) newBoard = canonicalize(newBoard, symMode, symTables);
+    *child = newBoard;
+
+    uint winX = 0, winO = 0;
+    uint WN = sizeof(WIN_MASKS)/sizeof(WIN_MASKS[0]);
+    for (uint i = 0; i < WN; i++) {
+        ulong m = WIN_MASKS[i];
+        if ((newX & m) == m && ++winX == 2) return OUT_X;
+        if ((newO & m) == m && ++winO == 2) return OUT_O;
+    }
+    if ((newX | newO) == 0x7FFFFFFUL) return OUT_TIE;
+    return OUT_FRONTIER;
+}
+
+inline ulong reserve(__global atomic_ulong* counter, uint n) {
+    return n == 0 ? 0 : atom_add((__global volatile ulong*)counter, (ulong)n);
+}
+
+// Reserves counts[s] slots in each output stream for this work-item. An
+// inclusive Hillis-Steele scan in local memory ranks the work-items, the last
+// one takes the whole group's share with one atomic per stream, and base[s]
+// receives this work-item's first slot. Slots follow work-item order, so
+// writes from neighbouring work-items land next to each other. Every
+// work-item of the group must call this.
+inline void group_reserve(const uint counts[OUTPUTS], ulong base[OUTPUTS],
+                          __local uint* scan, __local ulong* groupBase,
+                          __global atomic_ulong* frontierIdx, __global atomic_ulong* termXIdx,
+                          __global atomic_ulong* termOIdx, __global atomic_ulong* termTieIdx) {
+    uint lid = get_local_id(0);
+    for (uint s = 0; s < OUTPUTS; s++) scan[s * COMPACT_WG + lid] = counts[s];
+    barrier(CLK_LOCAL_MEM_FENCE);
+
+    for (uint off = 1; off < COMPACT_WG; off <<= 1) {
+        uint add[OUTPUTS];
+        for (uint s = 0; s < OUTPUTS; s++) add[s] = lid >= off ? scan[s * COMPACT_WG + lid - off] : 0;
+        barrier(CLK_LOCAL_MEM_FENCE);
+        for (uint s = 0; s < OUTPUTS; s++) scan[s * COMPACT_WG + lid] += add[s];
+        barrier(CLK_LOCAL_MEM_FENCE);
+    }
+
+    if (lid == COMPACT_WG - 1) {
+        groupBase[OUT_FRONTIER] = reserve(frontierIdx, scan[OUT_FRONTIER * COMPACT_WG + lid]);
+        groupBase[OUT_X]        = reserve(termXIdx,    scan[OUT_X * COMPACT_WG + lid]);
+        groupBase[OUT_O]        = reserve(termOIdx,    scan[OUT_O * COMPACT_WG + lid]);
+        groupBase[OUT_TIE]      = reserve(termTieIdx,  scan[OUT_TIE * COMPACT_WG + lid]);
+    }
+    barrier(CLK_LOCAL_MEM_FENCE);
+
+    for (uint s = 0; s < OUTPUTS; s++) {
+        base[s] = groupBase[s] + scan[s * COMPACT_WG + lid] - counts[s];
+    }
+}
+
+// Same work split and output as expand_and_classify, but each work-group
+// takes its output space with one atomic per stream instead of one per child.
+__kernel __attribute__((reqd_work_group_size(COMPACT_WG, 1, 1)))
+void expand_and_classify_compact(
+    __global const ulong*  inBoards,
+    const uint             inCount,
+    const uint             depth,
+    __global ulong*        outFrontier,
+    __global atomic_ulong* frontierIdx,
+    __global ulong*        outTermX,
+    __global atomic_ulong* termXIdx,
+    __global ulong*        outTermO,
+    __global atomic_ulong* termOIdx,
+    __global ulong*        outTermTie,
+    __global atomic_ulong* termTieIdx,
+    const uint             symMode,
+    __global const uint*   symTables
+) {
+    __local uint  scan[OUTPUTS * COMPACT_WG];
+    __local ulong groupBase[OUTPUTS];
+
+    uint gid      = get_global_id(0);
+    uint bIdx     = gid / 27;
+    uint bitIndex = gid % 27;
+
+    // No early returns: padding and occupied cells still take part in the scan
+    uint  kind  = OUT_NONE;
+    ulong child = 0;
+    if (bIdx < inCount) {
+        ulong board = inBoards[bIdx];
+        ulong xBits = board & 0x7FFFFFFUL;
+        ulong oBits = (board >> 27) & 0x7FFFFFFUL;
+        if (!(((xBits | oBits) >> bitIndex) & 1UL)) {
+            kind = classify_child(xBits, oBits, (depth & 1) == 0, bitIndex, symMode, symTables, &child);
+        }
+    }
+
+    uint counts[OUTPUTS] = {0, 0, 0, 0};
+    if (kind != OUT_NONE) counts[kind] = 1;
+    ulong base[OUTPUTS];
+    group_reserve(counts, base, scan, groupBase, frontierIdx, termXIdx, termOIdx, termTieIdx);
+
+    if (kind == OUT_FRONTIER)  outFrontier[base[OUT_FRONTIER]] = child;
+    else if (kind == OUT_X)    outTermX[base[OUT_X]] = child;
+    else if (kind == OUT_O)    outTermO[base[OUT_O]] = child;
+    else if (kind == OUT_TIE)  outTermTie[base[OUT_TIE]] = child;
+}
+
+// ---------------------------------------------------------------------------
+// One-work-item-per-board variant
+// ---------------------------------------------------------------------------
+
+// CELL_LINE_COUNT[], CELL_LINES[] and MAX_CELL_LINES injected by CLContext
+
+inline uint count_lines(ulong bits) {
+    uint n = 0;
+    uint WN = sizeof(WIN_MASKS)/sizeof(WIN_MASKS[0]);
+    for (uint i = 0; i < WN; i++) {
+        if ((bits & WIN_MASKS[i]) == WIN_MASKS[i]) n++;
+    }
+    return n;
+}
+
+inline uint lines_through(ulong bits, uint cell) {
+    __constant const ulong* lines = CELL_LINES + cell * MAX_CELL_LINES;
+    uint n = 0;
+    for (uint i = 0; i < CELL_LINE_COUNT[cell]; i++) {
+        if ((bits & lines[i]) == lines[i]) n++;
+    }
+    return n;
+}
+
+// Each work-item owns one parent and walks its empty cells. The mover's lines
+// are counted once per parent; a move can only add lines through its own
+// cell, so each child checks just those. A parent in the frontier is not won,
+// so only the mover can reach two lines. Output space is claimed per
+// work-group as in expand_and_classify_compact, and each parent's children
+// are written next to each other.
+__kernel __attribute__((reqd_work_group_size(COMPACT_WG, 1, 1)))
+void expand_and_classify_per_board(
+    __global const ulong*  inBoards,
+    const uint             inCount,
+    const uint             depth,
+    __global ulong*        outFrontier,
+    __global atomic_ulong* frontierIdx,
+    __global ulong*        outTermX,
+    __global atomic_ulong* termXIdx,
+    __global ulong*        outTermO,
+    __global atomic_ulong* termOIdx,
+    __global ulong*        outTermTie,
+    __global atomic_ulong* termTieIdx,
+    const uint             symMode,
+    __global const uint*   symTables
+) {
+    __local uint  scan[OUTPUTS * COMPACT_WG];
+    __local ulong groupBase[OUTPUTS];
+
+    uint  gid = get_global_id(0);
+    ulong kids[27];
+    uchar kinds[27];
+    uint  n = 0;
+    uint  counts[OUTPUTS] = {0, 0, 0, 0};
+
+    if (gid < inCount) {
+        ulong board = inBoards[gid];
+        ulong xBits = board & 0x7FFFFFFUL;
+        ulong oBits = (board >> 27) & 0x7FFFFFFUL;
+        bool isXturn = (depth & 1) == 0;
+        ulong mover  = isXturn ? xBits : oBits;
+        ulong empty  = ~(xBits | oBits) & 0x7FFFFFFUL;
+        uint  before = count_lines(mover);
+        bool  fills  = popcount(empty) == 1;
+        uint  winKind = isXturn ? OUT_X : OUT_O;
+
+        while (empty) {
+            ulong bit = empty & (~empty + 1);
+            uint cell = (uint)popcount(bit - 1);
+            empty ^= bit;
+
+            ulong newMover = mover | bit;
+            ulong newX = isXturn ? newMover : xBits;
+            ulong newO = isXturn ? oBits : newMover;
+            ulong child = newX | (newO << 27);
+            if (symMode != SYM_NONE) child = canonicalize(child, symMode, symTables);
+
+            uint kind = before + lines_through(newMover, cell) >= 2 ? winKind
+                      : fills ? OUT_TIE : OUT_FRONTIER;
+            kids[n] = child;
+            kinds[n] = (uchar)kind;
+            counts[kind]++;
+            n++;
+        }
+    }
+
+    ulong base[OUTPUTS];
+    group_reserve(counts, base, scan, groupBase, frontierIdx, termXIdx, termOIdx, termTieIdx);
+
+    for (uint i = 0; i < n; i++) {
+        uint kind = kinds[i];
+        ulong slot = base[kind]++;
+        if (kind == OUT_FRONTIER)  outFrontier[slot] = kids[i];
+        else if (kind == OUT_X)    outTermX[slot] = kids[i];
+        else if (kind == OUT_O)    outTermO[slot] = kids[i];
+        else                       outTermTie[slot] = kids[i];
+    }
+}
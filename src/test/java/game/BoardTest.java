@@ -0,0 +1,175 @@
+package game;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoardTest {
+    /** Every straight line of three cells except the four space diagonals, from coordinates alone. */
+    private static final List<int[]> LINES = new ArrayList<>();
+
+    static {
+        for (int dx = -1; dx <= 1; dx++) for (int dy = -1; dy <= 1; dy++) for (int dz = -1; dz <= 1; dz++) {
+            // Walk each line in one of its two directions only, and skip the space diagonals
+            if (dx * 9 + dy * 3 + dz <= 0 || (dx != 0 && dy != 0 && dz != 0)) continue;
+            for (int x = 0; x < 3; x++) for (int y = 0; y < 3; y++) for (int z = 0; z < 3; z++) {
+                int ex = x + 2 * dx, ey = y + 2 * dy, ez = z + 2 * dz;
+                if (ex < 0 || ex > 2 || ey < 0 || ey > 2 || ez < 0 || ez > 2) continue;
+                LINES.add(new int[]{cell(x, y, z), cell(x + dx, y + dy, z + dz), cell(ex, ey, ez)});
+            }
+        }
+    }
+
+    @Test
+    void testEmptyBoard() {
+        Board board = new Board();
+        assertEquals(0L, board.getBits());
+        assertEquals(0, board.getMoveCount());
+        assertEquals(-1, board.getLastMove());
+        assertEquals(Board.newEmptyBoard(), board.board());
+    }
+
+    @Test
+    void testPlayUsesKernelLayout() {
+        Board board = new Board();
+        board.play(0, 0, 0, Board.Player.X);
+        board.play(1, 0, 0, Board.Player.O);
+
+        // X at cell 0 -> bit 0, O at cell 1 -> bit 1 + 27
+        assertEquals(1L | (1L << 28), board.getBits());
+        assertEquals(Board.Player.X, board.getTile(0));
+        assertEquals(Board.Player.O, board.getTile(1));
+        assertEquals(Board.Player.NONE, board.getTile(2));
+        assertEquals(1, board.getLastMove());
+    }
+
+    @Test
+    void testUndoRestoresPosition() {
+        Board board = new Board();
+        board.play(13, Board.Player.X);
+        long before = board.getBits();
+        String viewBefore = board.board();
+
+        board.play(26, Board.Player.O);
+        assertEquals('o', board.board().charAt(26));
+
+        assertEquals(26, board.undo());
+        assertEquals(before, board.getBits());
+        assertEquals(viewBefore, board.board());
+        assertEquals(1, board.getMoveCount());
+    }
+
+    @Test
+    void testOccupiedTileRejected() {
+        Board board = new Board();
+        board.play(4, Board.Player.X);
+        assertThrows(IllegalArgumentException.class, () -> board.play(4, Board.Player.O));
+        assertThrows(IllegalArgumentException.class, () -> board.play(5, Board.Player.NONE));
+        assertEquals(1, board.getMoveCount());
+    }
+
+    @Test
+    void testFromBitsRoundTrip() {
+        long bits = 0x5L | (0x2L << Board.O_SHIFT);
+        Board board = new Board(bits);
+        assertEquals(bits, board.getBits());
+        assertEquals(3, board.getMoveCount());
+        assertEquals("xox", board.board().substring(0, 3));
+        assertThrows(IllegalArgumentException.class, () -> new Board(1L | (1L << Board.O_SHIFT)));
+    }
+
+    @Test
+    void testWinLinesIndex() {
+        assertEquals(45, WinLines.MASKS.length);
+        // Space diagonals are not lines, so a corner sits on 6 lines and the centre on 9.
+        assertEquals(6, WinLines.LINES_THROUGH[0].length);
+        assertEquals(9, WinLines.LINES_THROUGH[13].length);
+    }
+
+    @Test
+    void testOneLineIsNotAWin() {
+        Board board = new Board();
+        board.play(0, Board.Player.X);
+        board.play(9, Board.Player.O);
+        board.play(1, Board.Player.X);
+        board.play(10, Board.Player.O);
+        board.play(2, Board.Player.X);
+
+        assertSame(Board.Result.IN_PROGRESS, board.checkWin());
+    }
+
+    @Test
+    void testTwoLinesWin() {
+        Board board = new Board();
+        int[] xs = {0, 1, 2, 3, 6};   // rows 0-1-2 and column 0-3-6 share cell 0
+        int[] os = {9, 10, 20, 24};
+        for (int i = 0; i < os.length; i++) {
+            board.play(xs[i], Board.Player.X);
+            board.play(os[i], Board.Player.O);
+            assertFalse(board.checkWin().gameOver);
+        }
+        board.play(xs[4], Board.Player.X);
+        assertSame(Board.Result.X_WINS, board.checkWin());
+
+        board.undo();
+        assertSame(Board.Result.IN_PROGRESS, board.checkWin());
+    }
+
+    @Test
+    void testWinMasksMatchGeometry() {
+        Set<Long> masks = new HashSet<>();
+        for (long m : WinLines.MASKS) masks.add(m);
+        Set<Long> geometric = new HashSet<>();
+        for (int[] line : LINES) geometric.add((1L << line[0]) | (1L << line[1]) | (1L << line[2]));
+        assertEquals(geometric, masks);
+    }
+
+    @Test
+    void testCheckWinMatchesFullScan() {
+        Random rnd = new Random(42);
+        for (int game = 0; game < 200; game++) {
+            Board board = new Board();
+            while (true) {
+                // Take back a move now and then, so the counts are also checked after undo
+                if (board.getMoveCount() > 0 && rnd.nextInt(5) == 0) {
+                    board.undo();
+                } else {
+                    long empty = board.getEmptyCells();
+                    int cell;
+                    do {
+                        cell = rnd.nextInt(Board.CELLS);
+                    } while ((empty & (1L << cell)) == 0);
+                    board.play(cell, board.getSideToMove());
+                }
+
+                Board.Result scanned = scan(board);
+                assertSame(scanned, board.checkWin());
+                if (scanned.gameOver) break;
+            }
+        }
+    }
+
+    private static int cell(int x, int y, int z) {
+        return x + 3 * y + 9 * z;
+    }
+
+    /** The rules applied to the tiles directly: two completed lines win, a full board is a draw. */
+    private static Board.Result scan(Board board) {
+        int x = 0, o = 0;
+        for (int[] line : LINES) {
+            Board.Player p = board.getTile(line[0]);
+            if (p == Board.Player.NONE || board.getTile(line[1]) != p || board.getTile(line[2]) != p) continue;
+            if (p == Board.Player.X) x++;
+            else o++;
+        }
+        if (x >= 2) return Board.Result.X_WINS;
+        if (o >= 2) return Board.Result.O_WINS;
+        return board.getMoveCount() == Board.CELLS ? Board.Result.DRAW : Board.Result.IN_PROGRESS;
+    }
+}
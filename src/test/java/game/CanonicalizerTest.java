@@ -0,0 +1,110 @@
+package game;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CanonicalizerTest {
+
+    @Test
+    void testTransformsPreserveWinLines() {
+        Set<Long> lines = new HashSet<>();
+        for (long m : WinLines.MASKS) lines.add(m);
+
+        for (int t = 0; t < Canonicalizer.GROUP_SIZE; t++) {
+            for (long m : WinLines.MASKS) {
+                assertTrue(lines.contains(Canonicalizer.apply(t, m)), "transform " + t + " breaks a line");
+            }
+        }
+    }
+
+    @Test
+    void testTableLookupMatchesCellMaps() {
+        Random rnd = new Random(3);
+        for (int i = 0; i < 1000; i++) {
+            long board = randomBoard(rnd);
+            int t = rnd.nextInt(Canonicalizer.GROUP_SIZE);
+            long expected = 0L;
+            for (int bit = 0; bit < 2 * Board.CELLS; bit++) {
+                if ((board & (1L << bit)) == 0) continue;
+                int offset = bit < Board.CELLS ? 0 : Board.O_SHIFT;
+                expected |= 1L << (Canonicalizer.mapCell(t, bit - offset) + offset);
+            }
+            assertEquals(expected, Canonicalizer.apply(t, board));
+            assertEquals(board, Canonicalizer.apply(Canonicalizer.inverse(t), expected));
+        }
+    }
+
+    @Test
+    void testExportedTablesPermuteLikeApply() {
+        int[] tables = Canonicalizer.layerTables();
+        int p = Canonicalizer.LAYER_PATTERNS;
+        Random rnd = new Random(4);
+        for (int i = 0; i < 1000; i++) {
+            long board = randomBoard(rnd);
+            int t = rnd.nextInt(Canonicalizer.GROUP_SIZE);
+            long image = 0L;
+            for (int half = 0; half < 2; half++) {
+                long cells = (board >>> (half * Board.O_SHIFT)) & Board.CELL_MASK;
+                long permuted = 0L;
+                for (int layer = 0; layer < 3; layer++) {
+                    permuted |= tables[(t * 3 + layer) * p + (int) ((cells >>> (9 * layer)) & (p - 1))];
+                }
+                image |= permuted << (half * Board.O_SHIFT);
+            }
+            assertEquals(Canonicalizer.apply(t, board), image);
+        }
+    }
+
+    @Test
+    void testCanonicalIsSharedBySymmetricBoards() {
+        Random rnd = new Random(5);
+        for (int i = 0; i < 1000; i++) {
+            long board = randomBoard(rnd);
+            long canonical = Canonicalizer.canonical(board);
+            assertTrue(canonical <= board);
+
+            long packed = Canonicalizer.canonicalWithTransform(board);
+            assertEquals(canonical, Canonicalizer.board(packed));
+            assertEquals(canonical, Canonicalizer.apply(Canonicalizer.transform(packed), board));
+
+            int t = rnd.nextInt(Canonicalizer.GROUP_SIZE);
+            assertEquals(canonical, Canonicalizer.canonical(Canonicalizer.apply(t, board)));
+        }
+    }
+
+    @Test
+    void testClassSizes() {
+        assertEquals(1, Canonicalizer.classSize(0L));
+        // The centre is fixed by every symmetry.
+        assertEquals(1, Canonicalizer.classSize(1L << 13));
+        // 8 corners, 12 edges, 6 face centres.
+        assertEquals(8, Canonicalizer.classSize(1L));
+        assertEquals(12, Canonicalizer.classSize(1L << 1));
+        assertEquals(6, Canonicalizer.classSize(1L << 4));
+
+        Set<Long> distinct = new HashSet<>();
+        for (int a = 0; a < Board.CELLS; a++) {
+            for (int b = 0; b < Board.CELLS; b++) {
+                if (a != b) distinct.add(Canonicalizer.canonical((1L << a) | (1L << (b + Board.O_SHIFT))));
+            }
+        }
+        long total = 0;
+        for (long c : distinct) total += Canonicalizer.classSize(c);
+        assertEquals(27 * 26, total);
+    }
+
+    private static long randomBoard(Random rnd) {
+        long x = 0L, o = 0L;
+        for (int cell = 0; cell < Board.CELLS; cell++) {
+            int r = rnd.nextInt(3);
+            if (r == 1) x |= 1L << cell;
+            else if (r == 2) o |= 1L << cell;
+        }
+        return x | (o << Board.O_SHIFT);
+    }
+}
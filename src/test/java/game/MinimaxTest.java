@@ -0,0 +1,106 @@
+package game;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MinimaxTest {
+
+    @Test
+    void testTakesImmediateWin() {
+        // X holds rows 0-1-2 and 3-4 with cell 5 open: playing 5 completes a second line.
+        Board board = new Board();
+        int[] xs = {0, 1, 2, 3, 4};
+        int[] os = {9, 10, 18, 22, 26};
+        for (int i = 0; i < xs.length; i++) {
+            board.play(xs[i], Board.Player.X);
+            board.play(os[i], Board.Player.O);
+        }
+        Minimax.SearchResult result = new Minimax(1000, new TranspositionTable(1 << 20)).search(board.getBits());
+
+        board.play(result.move, Board.Player.X);
+        assertSame(Board.Result.X_WINS, board.checkWin());
+        assertEquals(Minimax.WIN_SCORE - 1, result.score);
+        assertTrue(result.solved);
+    }
+
+    @Test
+    void testSolvesLatePositionsExactly() {
+        Random rnd = new Random(7);
+        Minimax minimax = new Minimax(10_000, new TranspositionTable(1 << 20));
+        Minimax symmetric = new Minimax(10_000, new TranspositionTable(1 << 20), true);
+        int checked = 0;
+        while (checked < 30) {
+            Board board = randomPosition(rnd, 17);
+            if (board == null) continue;
+
+            Minimax.SearchResult result = minimax.search(board.getBits());
+            assertTrue(result.solved);
+            assertEquals(sign(bruteForce(board)), sign(result.score), "value of " + board.board());
+            assertEquals(result.score, symmetric.search(board.getBits()).score, "symmetric value of " + board.board());
+
+            board.play(result.move, board.getSideToMove());
+            Board.Result after = board.checkWin();
+            if (!after.gameOver) {
+                assertEquals(sign(result.score), -sign(bruteForce(board)), "best move of " + board.board());
+            }
+            checked++;
+        }
+    }
+
+    @Test
+    void testTableRoundTrip() {
+        TranspositionTable table = new TranspositionTable(1 << 16);
+        long key = TranspositionTable.hash(0x5L | (0x2L << Board.O_SHIFT));
+        assertEquals(0L, table.probe(key));
+
+        table.store(key, -997, 12, TranspositionTable.LOWER, 13);
+        long entry = table.probe(key);
+        assertNotEquals(0L, entry);
+        assertEquals(-997, TranspositionTable.score(entry));
+        assertEquals(12, TranspositionTable.depth(entry));
+        assertEquals(TranspositionTable.LOWER, TranspositionTable.bound(entry));
+        assertEquals(13, TranspositionTable.move(entry));
+        assertEquals(0.5, table.hitRate(), 1e-9);
+
+        // Zobrist keys are order independent: the same stones give the same key.
+        long incremental = TranspositionTable.zobrist(2) ^ TranspositionTable.zobrist(0)
+                ^ TranspositionTable.zobrist(1 + Board.O_SHIFT);
+        assertEquals(key, incremental);
+    }
+
+    /** Plays random moves until {@code stones} are down, or returns null if the game ended first. */
+    private static Board randomPosition(Random rnd, int stones) {
+        Board board = new Board();
+        while (board.getMoveCount() < stones) {
+            int cell = rnd.nextInt(Board.CELLS);
+            if ((board.getEmptyCells() & (1L << cell)) == 0) continue;
+            board.play(cell, board.getSideToMove());
+            if (board.checkWin().gameOver) return null;
+        }
+        return board;
+    }
+
+    /** Plain minimax over Board: +1 win, 0 draw, -1 loss for the side to move. */
+    private static int bruteForce(Board board) {
+        int best = -1;
+        long empty = board.getEmptyCells();
+        while (empty != 0) {
+            int cell = Long.numberOfTrailingZeros(empty);
+            empty &= empty - 1;
+            board.play(cell, board.getSideToMove());
+            Board.Result r = board.checkWin();
+            int score = r.gameOver ? (r.winner == Board.Player.NONE ? 0 : 1) : -bruteForce(board);
+            board.undo();
+            if (score > best) best = score;
+            if (best == 1) break;
+        }
+        return best;
+    }
+
+    private static int sign(int score) {
+        return Integer.signum(score);
+    }
+}
@@ -0,0 +1,66 @@
+package game;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PositionRankerTest {
+
+    @Test
+    void testSmallDepthsAreDenseAndBijective() {
+        for (int depth = 0; depth <= 3; depth++) {
+            long count = PositionRanker.count(depth);
+            Set<Long> seen = new HashSet<>();
+            for (long r = 0; r < count; r++) {
+                long board = PositionRanker.unrank(depth, r);
+                assertEquals(depth, PositionRanker.depth(board));
+                assertEquals(0, board & (board >>> Board.O_SHIFT) & Board.CELL_MASK, "X and O overlap");
+                assertEquals(r, PositionRanker.rank(board));
+                assertTrue(seen.add(board));
+            }
+        }
+        assertEquals(1, PositionRanker.count(0));
+        assertEquals(27, PositionRanker.count(1));
+        assertEquals(27 * 26, PositionRanker.count(2));
+    }
+
+    @Test
+    void testRoundTripAtEveryDepth() {
+        Random rnd = new Random(11);
+        for (int depth = 0; depth <= Board.CELLS; depth++) {
+            long count = PositionRanker.count(depth);
+            for (int i = 0; i < 200; i++) {
+                long r = Math.floorMod(rnd.nextLong(), count);
+                assertEquals(r, PositionRanker.rank(PositionRanker.unrank(depth, r)));
+            }
+            assertEquals(count - 1, PositionRanker.rank(PositionRanker.unrank(depth, count - 1)));
+        }
+    }
+
+    @Test
+    void testPlayedPositionsRoundTrip() {
+        Random rnd = new Random(12);
+        for (int i = 0; i < 1000; i++) {
+            Board board = new Board();
+            int stones = rnd.nextInt(Board.CELLS + 1);
+            while (board.getMoveCount() < stones) {
+                int cell = rnd.nextInt(Board.CELLS);
+                if ((board.getEmptyCells() & (1L << cell)) != 0) board.play(cell, board.getSideToMove());
+            }
+            long rank = PositionRanker.rank(board.getBits());
+            assertTrue(rank < PositionRanker.count(stones));
+            assertEquals(board.getBits(), PositionRanker.unrank(stones, rank));
+        }
+    }
+
+    @Test
+    void testRejectsImpossibleStoneCounts() {
+        assertThrows(IllegalArgumentException.class, () -> PositionRanker.rank(1L << Board.O_SHIFT));
+        assertThrows(IllegalArgumentException.class, () -> PositionRanker.rank(0b11L));
+        assertThrows(IllegalArgumentException.class, () -> PositionRanker.unrank(2, PositionRanker.count(2)));
+    }
+}
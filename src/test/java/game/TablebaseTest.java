@@ -0,0 +1,85 @@
+package game;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TablebaseTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testRoundTripAcrossBlocks() throws IOException {
+        Random rnd = new Random(5);
+        TreeMap<Long, Integer> entries = new TreeMap<>();
+        while (entries.size() < 1000) {
+            long board = Canonicalizer.canonical(randomBoard(rnd));
+            entries.put(board, rnd.nextInt(3));
+        }
+
+        Path file = dir.resolve("tb.bin");
+        try (Tablebase.Writer writer = new Tablebase.Writer(file)) {
+            for (var e : entries.entrySet()) writer.add(e.getKey(), e.getValue(), -1);
+        }
+
+        try (Tablebase tb = new Tablebase(file)) {
+            assertEquals(entries.size(), tb.size());
+            for (var e : entries.entrySet()) {
+                int entry = tb.probe(e.getKey());
+                assertEquals((int) e.getValue(), Tablebase.outcome(entry));
+                assertEquals(-1, Tablebase.move(entry));
+            }
+            assertEquals(-1, tb.probe(0x7L));
+        }
+    }
+
+    @Test
+    void testMoveIsMappedOntoProbedBoard() throws IOException {
+        // X on 0, O on 13: the stored move completes nothing, it only has to survive the symmetry.
+        long board = 1L | (1L << (13 + Board.O_SHIFT));
+        long packed = Canonicalizer.canonicalWithTransform(board);
+        long canonical = Canonicalizer.board(packed);
+        int canonicalMove = Canonicalizer.mapCell(Canonicalizer.transform(packed), 26);
+
+        Path file = dir.resolve("tb.bin");
+        try (Tablebase.Writer writer = new Tablebase.Writer(file)) {
+            writer.add(canonical, Tablebase.X_WINS, canonicalMove);
+        }
+
+        try (Tablebase tb = new Tablebase(file)) {
+            for (int t = 0; t < Canonicalizer.GROUP_SIZE; t++) {
+                long image = Canonicalizer.apply(t, board);
+                int entry = tb.probe(image);
+                assertEquals(Board.Result.X_WINS, Tablebase.result(entry));
+                assertEquals(Canonicalizer.mapCell(t, 26), Tablebase.move(entry));
+            }
+        }
+    }
+
+    @Test
+    void testRejectsUnsortedKeys() throws IOException {
+        try (Tablebase.Writer writer = new Tablebase.Writer(dir.resolve("tb.bin"))) {
+            writer.add(5L, Tablebase.DRAW, -1);
+            assertThrows(IllegalArgumentException.class, () -> writer.add(5L, Tablebase.DRAW, -1));
+        }
+    }
+
+    private static long randomBoard(Random rnd) {
+        long x = 0, o = 0;
+        int stones = rnd.nextInt(Board.CELLS);
+        for (int i = 0; i < stones; i++) {
+            int cell = rnd.nextInt(Board.CELLS);
+            if (((x | o) & (1L << cell)) != 0) continue;
+            if ((i & 1) == 0) x |= 1L << cell;
+            else o |= 1L << cell;
+        }
+        return x | (o << Board.O_SHIFT);
+    }
+}
@@ -0,0 +1,49 @@
+package players;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GemmTest {
+
+    /** The best available product agrees with a double-precision reference on every layer shape the network uses. */
+    @Test
+    void testBestMatchesReferenceOnLayerShapes() {
+        Gemm gemm = Gemm.best();
+        Random random = new Random(9);
+        int[][] shapes = {{27, 27, 64}, {27, 27 * 64, 64}, {3, 1728, 256}, {9, 256, 27}, {1, 5, 3}};
+        for (int[] shape : shapes) {
+            int m = shape[0], k = shape[1], n = shape[2];
+            float[] a = new float[m * k], b = new float[k * n], bias = new float[n];
+            for (int i = 0; i < a.length; i++) a[i] = random.nextInt(3) == 0 ? 0f : (float) random.nextGaussian();
+            for (int i = 0; i < b.length; i++) b[i] = (float) random.nextGaussian() * 0.1f;
+            for (int i = 0; i < n; i++) bias[i] = (float) random.nextGaussian();
+
+            for (boolean relu : new boolean[]{false, true}) {
+                int outAt = 5;
+                float[] out = new float[outAt + m * n];
+                gemm.gemm(a, m, k, b, bias, n, out, outAt, relu);
+                for (int r = 0; r < m; r++) {
+                    for (int c = 0; c < n; c++) {
+                        double sum = bias[c];
+                        for (int j = 0; j < k; j++) sum += (double) a[r * k + j] * b[j * n + c];
+                        if (relu) sum = Math.max(sum, 0);
+                        assertEquals(sum, out[outAt + r * n + c], 1e-4 * Math.max(1, Math.sqrt(k)),
+                                gemm.describe() + " " + m + "x" + k + "x" + n + " at " + r + "," + c);
+                    }
+                }
+                for (int i = 0; i < outAt; i++) assertEquals(0f, out[i]);
+            }
+        }
+    }
+
+    @Test
+    void testScalarAndBestNetworksAgree() {
+        PolicyValueNet net = PolicyValueNetTest.randomNet(4);
+        long[] boards = InferenceBenchmark.positions(64, new Random(2));
+        assertTrue(InferenceBenchmark.maxDifference(net.using(Gemm.SCALAR), net.using(Gemm.best()), boards)
+                <= InferenceBenchmark.TOLERANCE);
+    }
+}
@@ -0,0 +1,69 @@
+package players;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ModelRegistryTest {
+
+    @TempDir
+    Path dir;
+
+    private static void put(Map<String, WeightsFile.Tensor> tensors, Random random, String name, int... shape) {
+        int n = 1;
+        for (int d : shape) n *= d;
+        float[] values = new float[n];
+        for (int i = 0; i < n; i++) values[i] = (float) (random.nextGaussian() * 0.05);
+        tensors.put(name, new WeightsFile.Tensor(shape, values));
+    }
+
+    private static void writeWeights(Path file, long seed) throws IOException {
+        Random r = new Random(seed);
+        Map<String, WeightsFile.Tensor> t = new LinkedHashMap<>();
+        put(t, r, "conv1.weight", 64, 1, 3, 3, 3);
+        put(t, r, "conv1.bias", 64);
+        put(t, r, "conv2.weight", 64, 64, 3, 3, 3);
+        put(t, r, "conv2.bias", 64);
+        put(t, r, "conv3.weight", 64, 64, 3, 3, 3);
+        put(t, r, "conv3.bias", 64);
+        put(t, r, "fc_common.weight", 256, 64 * 27);
+        put(t, r, "fc_common.bias", 256);
+        put(t, r, "fc_policy.weight", 27, 256);
+        put(t, r, "fc_policy.bias", 27);
+        WeightsFile.write(file, t);
+    }
+
+    @Test
+    void testLoadsLatestAndSwapsInNewerFiles() throws IOException, InterruptedException {
+        writeWeights(dir.resolve("weights_1.bin"), 1);
+        try (ModelRegistry registry = new ModelRegistry(dir)) {
+            PolicyValueNet first = registry.await();
+            assertSame(first, registry.await());
+            assertEquals(dir.resolve("weights_1.bin"), registry.currentFile());
+
+            writeWeights(dir.resolve("weights_2.bin"), 2);
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (registry.current() == first && System.currentTimeMillis() < deadline) Thread.sleep(20);
+            assertNotSame(first, registry.current());
+            assertEquals(dir.resolve("weights_2.bin"), registry.currentFile());
+        }
+    }
+
+    @Test
+    void testAwaitFailsWithoutWeights() throws IOException {
+        try (ModelRegistry registry = new ModelRegistry(dir)) {
+            assertThrows(IOException.class, registry::await);
+            assertNull(registry.current());
+        }
+        try (ModelRegistry registry = new ModelRegistry(null)) {
+            assertThrows(IOException.class, registry::await);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package players;
+
+import game.Board;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PolicyValueNetTest {
+
+    private static float[] random(Random random, int n, double scale) {
+        float[] values = new float[n];
+        for (int i = 0; i < n; i++) values[i] = (float) ((random.nextDouble() * 2 - 1) * scale);
+        return values;
+    }
+
+    static PolicyValueNet randomNet(long seed) {
+        Random r = new Random(seed);
+        int c = PolicyValueNet.CHANNELS, t = PolicyValueNet.TAPS;
+        return new PolicyValueNet(
+                random(r, c * t, 0.3), random(r, c, 0.1),
+                random(r, c * c * t, 0.05), random(r, c, 0.1),
+                random(r, c * c * t, 0.05), random(r, c, 0.1),
+                random(r, PolicyValueNet.HIDDEN * PolicyValueNet.FLAT, 0.03), random(r, PolicyValueNet.HIDDEN, 0.1),
+                random(r, 27 * PolicyValueNet.HIDDEN, 0.1), random(r, 27, 0.1));
+    }
+
+    /** The nested-loop forward pass the network used to run, in double precision, on the same weights. */
+    private static double[] reference(long seed, long board, Board.Player me) {
+        Random r = new Random(seed);
+        int c = PolicyValueNet.CHANNELS, t = PolicyValueNet.TAPS;
+        float[][] conv = new float[6][];
+        conv[0] = random(r, c * t, 0.3);
+        conv[1] = random(r, c, 0.1);
+        conv[2] = random(r, c * c * t, 0.05);
+        conv[3] = random(r, c, 0.1);
+        conv[4] = random(r, c * c * t, 0.05);
+        conv[5] = random(r, c, 0.1);
+        float[] fcW = random(r, PolicyValueNet.HIDDEN * PolicyValueNet.FLAT, 0.03);
+        float[] fcB = random(r, PolicyValueNet.HIDDEN, 0.1);
+        float[] polW = random(r, 27 * PolicyValueNet.HIDDEN, 0.1);
+        float[] polB = random(r, 27, 0.1);
+
+        double[][][][] act = new double[1][3][3][3];
+        Board b = new Board(board);
+        for (int i = 0; i < 27; i++) {
+            Board.Player tile = b.getTile(i);
+            act[0][i % 3][(i / 3) % 3][i / 9] = tile == me ? 1 : tile == Board.Player.NONE ? 0 : -1;
+        }
+        for (int layer = 0; layer < 3; layer++) {
+            float[] w = conv[layer * 2], bias = conv[layer * 2 + 1];
+            int ins = act.length;
+            double[][][][] out = new double[c][3][3][3];
+            for (int oc = 0; oc < c; oc++)
+                for (int x = 0; x < 3; x++) for (int y = 0; y < 3; y++) for (int z = 0; z < 3; z++) {
+                    double sum = bias[oc];
+                    for (int ic = 0; ic < ins; ic++)
+                        for (int dx = -1; dx <= 1; dx++) for (int dy = -1; dy <= 1; dy++) for (int dz = -1; dz <= 1; dz++) {
+                            int xx = x + dx, yy = y + dy, zz = z + dz;
+                            if (xx < 0 || xx >= 3 || yy < 0 || yy >= 3 || zz < 0 || zz >= 3) continue;
+                            sum += w[((oc * ins + ic) * 27) + (dx + 1) * 9 + (dy + 1) * 3 + (dz + 1)] * act[ic][xx][yy][zz];
+                        }
+                    out[oc][x][y][z] = Math.max(sum, 0);
+                }
+            act = out;
+        }
+        double[] flat = new double[PolicyValueNet.FLAT];
+        int idx = 0;
+        for (int oc = 0; oc < c; oc++)
+            for (int x = 0; x < 3; x++) for (int y = 0; y < 3; y++) for (int z = 0; z < 3; z++)
+                flat[idx++] = act[oc][x][y][z];
+        double[] common = new double[PolicyValueNet.HIDDEN];
+        for (int i = 0; i < common.length; i++) {
+            double sum = fcB[i];
+            for (int j = 0; j < flat.length; j++) sum += fcW[i * flat.length + j] * flat[j];
+            common[i] = Math.max(sum, 0);
+        }
+        double[] logits = new double[27];
+        for (int i = 0; i < 27; i++) {
+            double sum = polB[i];
+            for (int j = 0; j < common.length; j++) sum += polW[i * common.length + j] * common[j];
+            logits[i] = sum;
+        }
+        return logits;
+    }
+
+    @Test
+    void testMatchesNestedLoopForwardPass() {
+        long seed = 7;
+        PolicyValueNet net = randomNet(seed);
+        Board board = new Board();
+        board.play(13, Board.Player.X);
+        board.play(0, Board.Player.O);
+        board.play(26, Board.Player.X);
+        board.play(5, Board.Player.O);
+
+        for (Board.Player me : new Board.Player[]{Board.Player.X, Board.Player.O}) {
+            double[] expected = reference(seed, board.getBits(), me);
+            float[] actual = net.logits(board.getBits(), me);
+            for (int i = 0; i < 27; i++) {
+                assertEquals(expected[i], actual[i], 1e-3 * Math.max(1, Math.abs(expected[i])), "cell " + i);
+            }
+        }
+    }
+
+    @Test
+    void testBatchPolicyMatchesSingleBoardLogits() {
+        PolicyValueNet net = randomNet(11);
+        Random random = new Random(5);
+        long[] boards = new long[PolicyValueNet.BATCH * 2 + 13];
+        for (int i = 0; i < boards.length; i++) {
+            Board board = new Board();
+            int stones = 2 * random.nextInt(13);
+            for (int m = 0; m < stones; m++) {
+                long empty = board.getEmptyCells();
+                int cell;
+                do cell = random.nextInt(27); while ((empty >>> cell & 1) == 0);
+                board.play(cell, board.getSideToMove());
+            }
+            boards[i] = board.getBits();
+        }
+
+        float[][] policies = net.policy(boards, Board.Player.X);
+        assertEquals(boards.length, policies.length);
+        for (int b = 0; b < boards.length; b++) {
+            float[] logits = net.logits(boards[b], Board.Player.X);
+            long empty = new Board(boards[b]).getEmptyCells();
+            double max = Double.NEGATIVE_INFINITY, sum = 0, total = 0;
+            for (int i = 0; i < 27; i++) if ((empty >>> i & 1) != 0) max = Math.max(max, logits[i]);
+            for (int i = 0; i < 27; i++) if ((empty >>> i & 1) != 0) sum += Math.exp(logits[i] - max);
+            for (int i = 0; i < 27; i++) {
+                double expected = (empty >>> i & 1) != 0 ? Math.exp(logits[i] - max) / sum : 0;
+                assertEquals(expected, policies[b][i], 1e-5, "board " + b + " cell " + i);
+                total += policies[b][i];
+            }
+            assertEquals(1.0, total, 1e-4);
+        }
+    }
+
+    @Test
+    void testFullBoardHasNoPolicy() {
+        PolicyValueNet net = randomNet(2);
+        long full = 0b101010101010101010101010101L | (0b010101010101010101010101010L << Board.O_SHIFT);
+        float[][] policies = net.policy(new long[]{full}, Board.Player.O);
+        for (float p : policies[0]) assertEquals(0f, p);
+    }
+
+    @Test
+    void testReusesScratchPerThread() {
+        PolicyValueNet net = randomNet(3);
+        float[] first = net.logits(0L, Board.Player.X);
+        float[] again = net.logits(1L, Board.Player.O);
+        assertSame(first, again);
+    }
+
+    @Test
+    void testRejectsWrongShape() {
+        float[] small = new float[1];
+        assertThrows(IllegalArgumentException.class, () -> new PolicyValueNet(
+                small, small, small, small, small, small, small, small, small, small));
+    }
+}
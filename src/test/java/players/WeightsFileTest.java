@@ -0,0 +1,64 @@
+package players;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WeightsFileTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testJsonConvertsToBinaryWithShapes() throws IOException {
+        Path json = dir.resolve("weights_3.json");
+        Files.writeString(json, "{\"conv.weight\": [[[1.5, -2], [0.25, 3]]], \"conv.bias\": [7, 8], \"scale\": 0.5}");
+        WeightsFile.main(new String[]{json.toString()});
+
+        Path bin = dir.resolve("weights_3.bin");
+        Map<String, WeightsFile.Tensor> tensors = WeightsFile.read(bin);
+        assertEquals(3, tensors.size());
+        assertArrayEquals(new int[]{1, 2, 2}, tensors.get("conv.weight").shape);
+        assertArrayEquals(new float[]{1.5f, -2f, 0.25f, 3f}, tensors.get("conv.weight").values);
+        assertArrayEquals(new float[]{7f, 8f}, tensors.get("conv.bias").values);
+        assertArrayEquals(new int[0], tensors.get("scale").shape);
+        assertArrayEquals(new float[]{0.5f}, tensors.get("scale").values);
+    }
+
+    @Test
+    void testBinaryIsLittleEndianWithHeader() throws IOException {
+        Path bin = dir.resolve("weights_1.bin");
+        WeightsFile.write(bin, Map.of("b", new WeightsFile.Tensor(new int[]{1}, new float[]{1f})));
+        byte[] bytes = Files.readAllBytes(bin);
+        assertEquals('P', bytes[0]);
+        assertEquals('V', bytes[1]);
+        assertEquals('N', bytes[2]);
+        assertEquals('W', bytes[3]);
+        assertEquals(WeightsFile.VERSION, bytes[4]);
+        // 1.0f is 0x3F800000; the data starts on the first 64-byte boundary after one entry
+        assertEquals((byte) 0x80, bytes[128 + 2]);
+        assertEquals((byte) 0x3F, bytes[128 + 3]);
+
+        bytes[4] = 99;
+        Files.write(bin, bytes);
+        assertThrows(IOException.class, () -> WeightsFile.read(bin));
+    }
+
+    @Test
+    void testLatestPrefersHighestNumberThenBinary() throws IOException {
+        assertNull(WeightsFile.latest(dir));
+        Files.writeString(dir.resolve("weights_9.json"), "{}");
+        Files.writeString(dir.resolve("weights_10.json"), "{}");
+        assertEquals(dir.resolve("weights_10.json"), WeightsFile.latest(dir));
+        WeightsFile.write(dir.resolve("weights_10.bin"), Map.of());
+        WeightsFile.write(dir.resolve("weights_2.bin"), Map.of());
+        Files.writeString(dir.resolve("notes.txt"), "");
+        assertEquals(dir.resolve("weights_10.bin"), WeightsFile.latest(dir));
+    }
+}
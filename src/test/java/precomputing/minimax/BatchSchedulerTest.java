@@ -0,0 +1,139 @@
+package precomputing.minimax;
+
+import com.carrotsearch.hppc.LongArrayList;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import support.LongStore;
+
+import java.io.IOException;
+import java.nio.LongBuffer;
+import java.nio.file.Path;
+import java.util.Iterator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchSchedulerTest {
+    private static final long HOST_BUDGET = 1L << 30;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testLimitFollowsEmptyCells() {
+        BatchScheduler scheduler = new BatchScheduler(new CpuExpandAndClassify(27_000), HOST_BUDGET);
+        assertEquals(1_000, scheduler.limit(0));
+        assertEquals(9_000, scheduler.limit(24));
+        assertEquals(27_000, scheduler.limit(26));
+    }
+
+    @Test
+    void testLimitFitsEverySlotOnTheDevice() {
+        long maxAlloc = 27_000L * Long.BYTES;
+        long device = 3L * 109 * Long.BYTES * 100;   // far below the 12 x maxAlloc of three slots with four full outputs
+        CpuExpandAndClassify expander = new CpuExpandAndClassify(27_000) {
+            @Override
+            public long deviceMemBytes() {
+                return device;
+            }
+
+            @Override
+            public long maxAllocBytes() {
+                return maxAlloc;
+            }
+        };
+        assertTrue(device < 12 * maxAlloc);
+        BatchScheduler scheduler = new BatchScheduler(expander, HOST_BUDGET);
+
+        // 100 boards fit unrounded; with 21,600-byte outputs rounded to 32 KB only 75 do
+        assertEquals(75, scheduler.limit(0));
+        for (int depth = 0; depth < 27; depth++) {
+            int limit = scheduler.limit(depth);
+            assertTrue(3 * ExpandAndClassify.deviceBytesPerSlot(limit, depth) <= device, "depth " + depth);
+            assertTrue(3 * ExpandAndClassify.deviceBytesPerSlot(2L * limit, depth) > device, "depth " + depth);
+        }
+    }
+
+    @Test
+    void testTargetFollowsBatchTimes() {
+        BatchScheduler scheduler = new BatchScheduler(new CpuExpandAndClassify(Integer.MAX_VALUE), HOST_BUDGET);
+        long start = scheduler.targetChildren();
+
+        scheduler.record(start, BatchScheduler.MIN_BATCH_NANOS / 2);
+        assertEquals(2 * start, scheduler.targetChildren());
+
+        // A short tail batch finishing fast says nothing about larger batches
+        scheduler.record(start / 8, BatchScheduler.MIN_BATCH_NANOS / 2);
+        assertEquals(2 * start, scheduler.targetChildren());
+
+        scheduler.record(2 * start, (BatchScheduler.MIN_BATCH_NANOS + BatchScheduler.MAX_BATCH_NANOS) / 2);
+        assertEquals(2 * start, scheduler.targetChildren());
+
+        scheduler.record(2 * start, 2 * BatchScheduler.MAX_BATCH_NANOS);
+        assertEquals(start, scheduler.targetChildren());
+    }
+
+    @Test
+    void testCpuLimitAndTargetFollowHostBudget() {
+        CpuExpandAndClassify expander = new CpuExpandAndClassify(Integer.MAX_VALUE);
+        // Two batches on the heap, each with its input and its 27 children held twice while joining
+        long perBoard = 2L * 8 * (1 + 2 * 27);
+        assertEquals(perBoard, expander.hostBytesPerBoard(0));
+        BatchScheduler scheduler = new BatchScheduler(expander, perBoard * 500);
+        assertEquals(500, scheduler.limit(0));
+
+        // No heap can fit in a one-byte budget, so the target shrinks even for a fast batch
+        BatchScheduler starved = new BatchScheduler(expander, 1);
+        long start = starved.targetChildren();
+        starved.record(start, BatchScheduler.MIN_BATCH_NANOS / 2);
+        assertEquals(start / 2, starved.targetChildren());
+    }
+
+    @Test
+    void testScheduledRunMatchesSingleBatch() throws IOException {
+        CpuExpandAndClassify expander = new CpuExpandAndClassify(27 * 50);
+        LongArrayList depth2 = expander.run(expander.run(LongArrayList.from(0L), 0).frontierChunks, 1).frontierChunks;
+        LongArrayList whole = expander.run(depth2, 2).frontierChunks;
+
+        BatchScheduler scheduler = new BatchScheduler(expander, HOST_BUDGET);
+        Iterator<ExpandAndClassify.Batch> batches = scheduler.batches(depth2, 2);
+        LongArrayList scheduled = new LongArrayList();
+        int[] ended = {0};
+        expander.runAll(batches, 2, ExpandAndClassify.SymmetryMode.NONE,
+                scheduler.measure(new ExpandAndClassify.ResultSink() {
+                    @Override
+                    public void accept(ExpandAndClassify.Output output, LongBuffer boards) {
+                        if (output == ExpandAndClassify.Output.FRONTIER) {
+                            while (boards.hasRemaining()) scheduled.add(boards.get());
+                        }
+                    }
+
+                    @Override
+                    public void endBatch() {
+                        ended[0]++;
+                    }
+                }));
+        assertEquals(whole, scheduled);
+        // Batches are capped at what one output buffer holds for 25 children per board
+        assertEquals((depth2.size() + 53) / 54, ended[0]);
+    }
+
+    @Test
+    void testOffHeapBatchesMatchHeapBatches() throws IOException {
+        CpuExpandAndClassify expander = new CpuExpandAndClassify(27 * 50);
+        LongArrayList depth2 = expander.run(expander.run(LongArrayList.from(0L), 0).frontierChunks, 1).frontierChunks;
+        LongArrayList whole = expander.run(depth2, 2).frontierChunks;
+
+        LongArrayList scheduled = new LongArrayList();
+        try (LongStore store = new LongStore(dir, 1 << 20)) {
+            store.addAll(depth2.buffer, 0, depth2.size());
+            BatchScheduler scheduler = new BatchScheduler(expander, HOST_BUDGET);
+            // Consecutive batches reuse the CPU backend's input arrays while earlier ones are still expanding
+            expander.runAll(scheduler.batches(store, 2), 2, ExpandAndClassify.SymmetryMode.NONE, (output, boards) -> {
+                if (output == ExpandAndClassify.Output.FRONTIER) {
+                    while (boards.hasRemaining()) scheduled.add(boards.get());
+                }
+            });
+        }
+        assertEquals(whole, scheduled);
+    }
+}
@@ -0,0 +1,115 @@
+package precomputing.minimax;
+
+import com.carrotsearch.hppc.LongArrayList;
+import com.carrotsearch.hppc.LongHashSet;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.LongBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CpuExpandAndClassifyTest {
+    private static final long CELL_MASK = 0x7FFFFFFL;
+
+    private final CpuExpandAndClassify expander = new CpuExpandAndClassify(1 << 20);
+
+    private static int frontierSize(ExpandAndClassify.Result result) {
+        return result.frontierChunks.size();
+    }
+
+    @Test
+    void testEmptyBoardExpansion() {
+        LongArrayList level = LongArrayList.from(0L);
+        int[] expected = {27, 27 * 26, 27 * 26 * 25};
+        for (int depth = 0; depth < expected.length; depth++) {
+            ExpandAndClassify.Result result = expander.run(level, depth);
+            assertEquals(expected[depth], frontierSize(result));
+            assertEquals(0, result.termX.size() + result.termO.size() + result.termTie.size());
+            level = result.frontierChunks;
+        }
+    }
+
+    @Test
+    void testFirstMoveIsX() {
+        ExpandAndClassify.Result result = expander.run(LongArrayList.from(0L), 0);
+        LongArrayList children = result.frontierChunks;
+        for (int i = 0; i < children.size(); i++) {
+            long board = children.get(i);
+            assertEquals(1, Long.bitCount(board & CELL_MASK));
+            assertEquals(0, board >>> 27);
+        }
+    }
+
+    @Test
+    void testWeightedCanonicalCountsMatchDistinct() {
+        LongArrayList raw = LongArrayList.from(0L);
+        LongArrayList canonical = LongArrayList.from(0L);
+        for (int depth = 0; depth < 3; depth++) {
+            raw = distinct(expander.run(raw, depth).frontierChunks);
+            LongArrayList tagged = distinct(expander.run(canonical, depth,
+                    ExpandAndClassify.SymmetryMode.CANONICAL_WITH_CLASS_SIZE).frontierChunks);
+
+            assertEquals(raw.size(), ExpandAndClassify.weightedCount(tagged));
+            canonical = new LongArrayList(tagged.size());
+            for (int i = 0; i < tagged.size(); i++) canonical.add(ExpandAndClassify.boardOf(tagged.get(i)));
+        }
+    }
+
+    private static LongArrayList distinct(LongArrayList boards) {
+        LongHashSet set = new LongHashSet();
+        for (int i = 0; i < boards.size(); i++) set.add(boards.get(i));
+        return LongArrayList.from(set.toArray());
+    }
+
+    @Test
+    void testRunAllDeliversBatchesInOrder() throws IOException {
+        LongArrayList depth2 = expander.run(expander.run(LongArrayList.from(0L), 0).frontierChunks, 1).frontierChunks;
+        LongArrayList whole = expander.run(depth2, 2).frontierChunks;
+
+        LongArrayList pipelined = new LongArrayList();
+        int[] batches = {0};
+        expander.runAll(ExpandAndClassify.batches(depth2, 100), 2, ExpandAndClassify.SymmetryMode.NONE,
+                new ExpandAndClassify.ResultSink() {
+                    @Override
+                    public void accept(ExpandAndClassify.Output output, LongBuffer boards) {
+                        assertTrue(boards.isReadOnly());
+                        if (output == ExpandAndClassify.Output.FRONTIER) {
+                            while (boards.hasRemaining()) pipelined.add(boards.get());
+                        }
+                    }
+
+                    @Override
+                    public void endBatch() {
+                        batches[0]++;
+                    }
+                });
+        assertEquals(whole, pipelined);
+        assertEquals((depth2.size() + 99) / 100, batches[0]);
+    }
+
+    @Test
+    void testTerminalClassification() {
+        // X holds the full line 0,1,2 and two stones of 3,4,5; O has four scattered stones.
+        long x = (1L << 0) | (1L << 1) | (1L << 2) | (1L << 3) | (1L << 4);
+        long o = (1L << 9) | (1L << 13) | (1L << 20) | (1L << 24);
+        ExpandAndClassify.Result result = expander.run(LongArrayList.from(x | (o << 27)), 9);
+        // Depth 9 is odd, so O moves and nothing completes two lines for O.
+        assertEquals(0, result.termX.size());
+
+        long x2 = x;
+        long o2 = o | (1L << 25);
+        result = expander.run(LongArrayList.from(x2 | (o2 << 27)), 10);
+        assertTrue(result.termX.contains(x2 | (1L << 5) | (o2 << 27)));
+    }
+
+    @Test
+    void testFullBoardDraw() {
+        // One empty cell left; filling it completes no lines for X.
+        long x = 0b0_1010_1010_1010_1010_1010_1010L & CELL_MASK & ~1L;
+        long o = CELL_MASK & ~x & ~1L;
+        ExpandAndClassify.Result result = expander.run(LongArrayList.from(x | (o << 27)), 26);
+        assertEquals(1, result.termX.size() + result.termTie.size());
+        assertEquals(0, frontierSize(result));
+    }
+}
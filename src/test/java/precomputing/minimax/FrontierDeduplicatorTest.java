@@ -0,0 +1,68 @@
+package precomputing.minimax;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FrontierDeduplicatorTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testMergesDuplicatesAcrossSpilledRuns() throws IOException {
+        Random rnd = new Random(11);
+        TreeMap<Long, Integer> expected = new TreeMap<>();
+
+        Path out = tempDir.resolve("frontier.dat");
+        Path counts = tempDir.resolve("counts.dat");
+        long distinct;
+        try (FrontierDeduplicator dedup = new FrontierDeduplicator(tempDir.resolve("runs"), 100)) {
+            long[] batch = new long[37];
+            for (int round = 0; round < 30; round++) {
+                for (int i = 0; i < batch.length; i++) {
+                    batch[i] = rnd.nextInt(500);
+                    expected.merge(batch[i], 1, Integer::sum);
+                }
+                dedup.add(batch, 0, batch.length);
+            }
+            assertEquals(30 * 37, dedup.addedCount());
+            distinct = dedup.finish(out, counts);
+        }
+
+        assertEquals(expected.size(), distinct);
+        assertEquals(distinct * Long.BYTES, Files.size(out));
+        try (DataInputStream boards = new DataInputStream(new FileInputStream(out.toFile()));
+             DataInputStream mult = new DataInputStream(new FileInputStream(counts.toFile()))) {
+            for (var e : expected.entrySet()) {
+                assertEquals((long) e.getKey(), boards.readLong());
+                assertEquals((long) e.getValue(), mult.readLong());
+            }
+        }
+        try (var runs = Files.list(tempDir.resolve("runs"))) {
+            assertEquals(0, runs.count(), "runs should be deleted after merging");
+        }
+    }
+
+    @Test
+    void testSingleRunWithoutCounts() throws IOException {
+        Path out = tempDir.resolve("frontier.dat");
+        try (FrontierDeduplicator dedup = new FrontierDeduplicator(tempDir, 16)) {
+            dedup.add(5L);
+            dedup.add(3L);
+            dedup.add(5L);
+            assertEquals(2, dedup.finish(out, null));
+        }
+        try (DataInputStream in = new DataInputStream(new FileInputStream(out.toFile()))) {
+            assertEquals(3L, in.readLong());
+            assertEquals(5L, in.readLong());
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package precomputing.minimax;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.*;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PathCountsTest {
+    private static final int DEPTHS = 4; // no board can be terminal this early
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testMatchesEnumeratedMoveOrders() throws IOException {
+        List<TreeMap<Long, Long>> expected = new ArrayList<>();
+        for (int d = 0; d <= DEPTHS; d++) expected.add(new TreeMap<>());
+        enumerate(0L, 0, expected);
+
+        for (int d = 1; d <= DEPTHS; d++) {
+            Path frontier = dir.resolve("frontier" + d + ".dat");
+            try (DataOutputStream out = new DataOutputStream(new FileOutputStream(frontier.toFile()))) {
+                for (long board : expected.get(d).keySet()) out.writeLong(board);
+            }
+
+            long paths;
+            try (PathCounts parents = d == 1 ? PathCounts.root()
+                    : PathCounts.open(dir.resolve("frontier" + (d - 1) + ".dat"), dir.resolve("counts" + (d - 1) + ".dat"))) {
+                paths = parents.write(frontier, d, dir.resolve("counts" + d + ".dat"));
+            }
+
+            long orders = 1;
+            for (int i = 0; i < d; i++) orders *= 27 - i;
+            assertEquals(orders, paths);
+            try (DataInputStream in = new DataInputStream(new FileInputStream(dir.resolve("counts" + d + ".dat").toFile()))) {
+                for (long count : expected.get(d).values()) assertEquals(count, in.readLong());
+                assertEquals(-1, in.read());
+            }
+        }
+    }
+
+    @Test
+    void testMissingParentsContributeNothing() throws IOException {
+        try (PathCounts root = PathCounts.root()) {
+            long x = 1L << 4;
+            long o = 1L << (27 + 9);
+            assertEquals(1, root.countOf(x, 1));
+            // The only X stone taken back leaves a board with an O stone, which depth 0 does not hold
+            assertEquals(0, root.countOf(x | o, 1));
+        }
+    }
+
+    private static void enumerate(long board, int stones, List<TreeMap<Long, Long>> counts) {
+        counts.get(stones).merge(board, 1L, Long::sum);
+        if (stones == DEPTHS) return;
+        int shift = (stones & 1) == 0 ? 0 : 27;
+        long occupied = (board | (board >>> 27)) & ((1L << 27) - 1);
+        for (int cell = 0; cell < 27; cell++) {
+            if ((occupied & (1L << cell)) == 0) enumerate(board | (1L << (cell + shift)), stones + 1, counts);
+        }
+    }
+}
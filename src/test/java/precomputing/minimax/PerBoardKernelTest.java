@@ -0,0 +1,48 @@
+package precomputing.minimax;
+
+import com.carrotsearch.hppc.LongArrayList;
+import game.Board;
+import org.junit.jupiter.api.Test;
+import support.CLContext;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class PerBoardKernelTest {
+    private static final int PARENTS = 2000;
+
+    @Test
+    void testPerBoardMatchesCpuExpander() {
+        CLContext cl = openDevice();
+        assumeTrue(cl != null, "No OpenCL device");
+
+        ExpandAndClassify gpu = new ExpandAndClassify(cl, 1 << 20, ExpandAndClassify.KernelVariant.PER_BOARD);
+        CpuExpandAndClassify cpu = new CpuExpandAndClassify(1 << 20);
+        Random random = new Random(20);
+        try {
+            for (ExpandAndClassify.SymmetryMode symmetry : ExpandAndClassify.SymmetryMode.values()) {
+                for (int depth = 0; depth < Board.CELLS; depth++) {
+                    LongArrayList parents = KernelBenchmark.sample(depth, PARENTS, random);
+                    if (parents.isEmpty()) continue;
+                    long[][] expected = KernelBenchmark.sorted(cpu.run(parents, depth, symmetry));
+                    long[][] actual = KernelBenchmark.sorted(gpu.run(parents, depth, symmetry));
+                    assertTrue(Arrays.deepEquals(expected, actual), symmetry + " at depth " + depth);
+                }
+            }
+        } finally {
+            gpu.close();
+        }
+    }
+
+    private static CLContext openDevice() {
+        try {
+            return new CLContext("cl/expand_and_classify.cl");
+        } catch (IOException | RuntimeException | LinkageError e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package precomputing.minimax;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrecomputeManifestTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testCommitMovesStagedFilesAndSurvivesReload() throws IOException {
+        Path frontier = dir.resolve("frontier_depth1.dat");
+        Files.write(PrecomputeManifest.staging(frontier), new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+
+        PrecomputeManifest manifest = new PrecomputeManifest(dir);
+        assertEquals(0, manifest.lastDepth());
+        manifest.commit(1, 1, 0, List.of(frontier));
+
+        assertTrue(Files.exists(frontier));
+        assertFalse(Files.exists(PrecomputeManifest.staging(frontier)));
+
+        PrecomputeManifest reloaded = new PrecomputeManifest(dir);
+        assertEquals(1, reloaded.lastDepth());
+        assertEquals(1, reloaded.entry(1).frontier);
+        reloaded.verify(1);
+    }
+
+    @Test
+    void testVerifyRejectsChangedFiles() throws IOException {
+        Path frontier = dir.resolve("frontier_depth1.dat");
+        Files.write(frontier, new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+        PrecomputeManifest manifest = new PrecomputeManifest(dir);
+        manifest.commit(1, 1, 0, List.of(frontier));
+
+        Files.write(frontier, new byte[]{1, 2, 3, 4, 5, 6, 7, 9});
+        assertThrows(IOException.class, () -> new PrecomputeManifest(dir).verify(1));
+
+        Files.write(frontier, new byte[]{1, 2, 3, 4});
+        assertThrows(IOException.class, () -> new PrecomputeManifest(dir).verify(1));
+    }
+
+    @Test
+    void testRecommitDropsDeeperDepths() throws IOException {
+        PrecomputeManifest manifest = new PrecomputeManifest(dir);
+        for (int depth = 1; depth <= 3; depth++) {
+            Path f = dir.resolve("frontier_depth" + depth + ".dat");
+            Files.write(f, new byte[8 * depth]);
+            manifest.commit(depth, depth, 10, List.of(f));
+        }
+        assertEquals(30, manifest.totalTerminals());
+
+        manifest.commit(2, 2, 5, List.of(dir.resolve("frontier_depth2.dat")));
+        PrecomputeManifest reloaded = new PrecomputeManifest(dir);
+        assertEquals(2, reloaded.lastDepth());
+        assertNull(reloaded.entry(3));
+        assertEquals(15, reloaded.totalTerminals());
+
+        reloaded.clear();
+        assertEquals(0, new PrecomputeManifest(dir).lastDepth());
+    }
+
+    @Test
+    void testAppendedRangesToleratePaddingAndCatchChanges() throws IOException {
+        Path terminals = dir.resolve("terminals.bin");
+        Files.write(terminals, new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 0, 0, 0, 0});   // padded like a mapped file
+        PrecomputeManifest manifest = new PrecomputeManifest(dir);
+        manifest.commit(1, 0, 1, List.of(), Map.of(terminals, new long[]{0, 8}));
+
+        Files.write(terminals, new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 9, 9, 9, 9, 9, 9, 9});
+        manifest.commit(2, 0, 1, List.of(), Map.of(terminals, new long[]{8, 8}));
+
+        // Uncommitted appends after the last range are fine
+        Files.write(terminals, new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 9, 9, 9, 9, 9, 9, 9, 5});
+        PrecomputeManifest reloaded = new PrecomputeManifest(dir);
+        reloaded.verify(1);
+        reloaded.verify(2);
+
+        Files.write(terminals, new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 9, 9, 9, 9, 9, 9, 0});
+        assertThrows(IOException.class, () -> new PrecomputeManifest(dir).verify(2));
+        Files.write(terminals, new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9});
+        assertThrows(IOException.class, () -> new PrecomputeManifest(dir).verify(2));
+    }
+
+    @Test
+    void testResumeFallsBackPastDepthsThatFailVerification() throws IOException {
+        PrecomputeManifest manifest = new PrecomputeManifest(dir);
+        for (int depth = 1; depth <= 3; depth++) {
+            Path f = dir.resolve("frontier_depth" + depth + ".dat");
+            Files.write(PrecomputeManifest.staging(f), new byte[8 * depth]);
+            manifest.commit(depth, depth, 10, List.of(f));
+        }
+        assertEquals(3, new PrecomputeManifest(dir).resumableDepth());
+
+        Files.write(dir.resolve("frontier_depth3.dat"), new byte[8]);
+        Files.delete(dir.resolve("frontier_depth2.dat"));
+        PrecomputeManifest reloaded = new PrecomputeManifest(dir);
+        assertEquals(1, reloaded.resumableDepth());
+        assertEquals(10, reloaded.totalTerminals());
+        assertEquals(1, new PrecomputeManifest(dir).lastDepth());
+
+        Files.delete(dir.resolve("frontier_depth1.dat"));
+        assertEquals(0, new PrecomputeManifest(dir).resumableDepth());
+    }
+}
@@ -0,0 +1,163 @@
+package precomputing.minimax;
+
+import com.carrotsearch.hppc.LongArrayList;
+import game.Board;
+import game.Minimax;
+import game.Tablebase;
+import game.TranspositionTable;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RetrogradeSolverTest {
+    private static final ExpandAndClassify.SymmetryMode MODE =
+            ExpandAndClassify.SymmetryMode.CANONICAL_WITH_CLASS_SIZE;
+    private static final int START_DEPTH = 20;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testPackRoundTrip() {
+        short v = RetrogradeSolver.pack(RetrogradeSolver.O_WINS, 27, 26);
+        assertEquals(RetrogradeSolver.O_WINS, RetrogradeSolver.outcome(v));
+        assertEquals(27, RetrogradeSolver.distance(v));
+        assertEquals(26, RetrogradeSolver.move(v));
+        assertEquals(-1, RetrogradeSolver.move(RetrogradeSolver.pack(RetrogradeSolver.DRAW, 0, -1)));
+    }
+
+    @Test
+    void testMatchesMinimaxFromLatePositions() throws IOException {
+        LongArrayList starts = solveFromRandomPositions(3);
+
+        Minimax minimax = new Minimax(10_000, new TranspositionTable(1 << 20));
+        try (SolvedTable table = new SolvedTable(RetrogradeSolver.keysFile(dir, START_DEPTH),
+                RetrogradeSolver.valuesFile(dir, START_DEPTH))) {
+            for (int i = 0; i < starts.size(); i++) {
+                long key = CpuExpandAndClassify.emit(starts.get(i), MODE);
+                long index = table.find(key);
+                assertTrue(index >= 0);
+                short v = table.value(index);
+
+                Minimax.SearchResult result = minimax.search(starts.get(i));
+                assertTrue(result.solved);
+                int expected = result.score > 0 ? RetrogradeSolver.X_WINS    // X is to move at even depths
+                        : result.score < 0 ? RetrogradeSolver.O_WINS : RetrogradeSolver.DRAW;
+                assertEquals(expected, RetrogradeSolver.outcome(v));
+                if (result.score != 0) {
+                    assertEquals(Minimax.WIN_SCORE - Math.abs(result.score), RetrogradeSolver.distance(v));
+                }
+
+                // The stored move is on the canonical board and must keep the value.
+                Board canonical = new Board(ExpandAndClassify.boardOf(key));
+                canonical.play(RetrogradeSolver.move(v), Board.Player.X);
+                Board.Result after = canonical.checkWin();
+                if (!after.gameOver) {
+                    int reply = minimax.search(canonical.getBits()).score;
+                    assertEquals(Integer.signum(result.score), -Integer.signum(reply));
+                } else {
+                    assertEquals(expected, after == Board.Result.X_WINS ? RetrogradeSolver.X_WINS
+                            : after == Board.Result.O_WINS ? RetrogradeSolver.O_WINS : RetrogradeSolver.DRAW);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testTablebaseAgreesWithSolvedDepth() throws IOException {
+        LongArrayList starts = solveFromRandomPositions(4);
+        Path file = dir.resolve("tablebase.bin");
+        long written = new TablebaseBuilder(dir, 1 << 12).build(file);
+
+        try (Tablebase tablebase = new Tablebase(file);
+             SolvedTable solved = new SolvedTable(RetrogradeSolver.keysFile(dir, START_DEPTH),
+                     RetrogradeSolver.valuesFile(dir, START_DEPTH))) {
+            assertEquals(written, tablebase.size());
+            for (int i = 0; i < starts.size(); i++) {
+                long board = starts.get(i);
+                short v = solved.value(solved.find(CpuExpandAndClassify.emit(board, MODE)));
+                int entry = tablebase.probe(board);
+                assertEquals(RetrogradeSolver.outcome(v), Tablebase.outcome(entry));
+
+                // The move comes back on the probed (non-canonical) board and keeps the outcome.
+                int move = Tablebase.move(entry);
+                assertEquals(0, (board | (board >>> Board.O_SHIFT)) & (1L << move));
+                Board next = new Board(board);
+                next.play(move, Board.Player.X);
+                int after = next.checkWin().gameOver
+                        ? (next.checkWin() == Board.Result.X_WINS ? Tablebase.X_WINS : Tablebase.DRAW)
+                        : Tablebase.outcome(tablebase.probe(next.getBits()));
+                assertEquals(Tablebase.outcome(entry), after);
+            }
+        }
+    }
+
+    /** Random positions at START_DEPTH, precomputed and solved down to them. */
+    private LongArrayList solveFromRandomPositions(long seed) throws IOException {
+        Random rnd = new Random(seed);
+        LongArrayList starts = new LongArrayList();
+        while (starts.size() < 20) {
+            Board board = randomPosition(rnd, START_DEPTH);
+            if (board != null) starts.add(board.getBits());
+        }
+        precompute(starts);
+
+        RetrogradeSolver solver = new RetrogradeSolver(dir, MODE, 1 << 12);
+        for (int depth = Board.CELLS; depth >= START_DEPTH; depth--) {
+            solver.solveDepth(depth);
+        }
+        return starts;
+    }
+
+    /** Writes the same files GPUTimer does, from the given boards down to full boards. */
+    private void precompute(LongArrayList starts) throws IOException {
+        CpuExpandAndClassify expander = new CpuExpandAndClassify(1 << 20);
+        LongArrayList frontier = new LongArrayList();
+        for (int i = 0; i < starts.size(); i++) frontier.add(CpuExpandAndClassify.emit(starts.get(i), MODE));
+        frontier = dedup(frontier, dir.resolve("frontier_depth" + START_DEPTH + ".dat"));
+
+        for (int depth = START_DEPTH + 1; depth <= Board.CELLS; depth++) {
+            ExpandAndClassify.Result result = expander.run(frontier, depth - 1, MODE);
+            write(result.termX, dir.resolve("terminals_depth" + depth + "_X.dat"));
+            write(result.termO, dir.resolve("terminals_depth" + depth + "_O.dat"));
+            write(result.termTie, dir.resolve("terminals_depth" + depth + "_TIE.dat"));
+            frontier = dedup(result.frontierChunks, dir.resolve("frontier_depth" + depth + ".dat"));
+        }
+    }
+
+    private LongArrayList dedup(LongArrayList boards, Path out) throws IOException {
+        try (FrontierDeduplicator dedup = new FrontierDeduplicator(dir.resolve("runs"), 1 << 12)) {
+            dedup.add(boards);
+            dedup.finish(out, null);
+        }
+        LongArrayList distinct = new LongArrayList();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(out)))) {
+            for (long n = Files.size(out) / Long.BYTES; n > 0; n--) distinct.add(in.readLong());
+        }
+        return distinct;
+    }
+
+    private static void write(LongArrayList boards, Path out) throws IOException {
+        try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(out)))) {
+            for (int i = 0; i < boards.size(); i++) dos.writeLong(boards.get(i));
+        }
+    }
+
+    /** Plays random moves until {@code stones} are down, or returns null if the game ended first. */
+    private static Board randomPosition(Random rnd, int stones) {
+        Board board = new Board();
+        while (board.getMoveCount() < stones) {
+            int cell = rnd.nextInt(Board.CELLS);
+            if ((board.getEmptyCells() & (1L << cell)) == 0) continue;
+            board.play(cell, board.getSideToMove());
+            if (board.checkWin().gameOver) return null;
+        }
+        return board;
+    }
+}
@@ -0,0 +1,60 @@
+package support;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.lang.foreign.ValueLayout;
+import java.nio.LongBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongStoreTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testSpillsTransparentlyPastMemoryLimit() throws IOException {
+        LongStore store = new LongStore(dir, 1 << 20);
+        long[] chunk = new long[10_000];
+        for (int c = 0; c < 50; c++) {
+            for (int i = 0; i < chunk.length; i++) chunk[i] = -((long) c * chunk.length + i);
+            store.addAll(chunk, 0, chunk.length);
+        }
+        assertTrue(store.isSpilled());
+        assertEquals(500_000, store.size());
+        assertEquals(-123_456, store.get(123_456));
+
+        long[] back = new long[100];
+        store.get(499_900, back, 0, back.length);
+        for (int i = 0; i < back.length; i++) assertEquals(-(499_900L + i), back[i]);
+        assertEquals(-7, store.slice(5, 10).getAtIndex(ValueLayout.JAVA_LONG, 2));
+
+        store.close();
+        assertEquals(0, store.size());
+        try (Stream<Path> left = Files.list(dir)) {
+            assertEquals(0, left.count());
+        }
+    }
+
+    @Test
+    void testBufferAppendAndBounds() throws IOException {
+        try (LongStore store = new LongStore(dir, 1 << 20)) {
+            store.add(1);
+            store.addAll(LongBuffer.wrap(new long[]{2, 3, 4}, 1, 2).asReadOnlyBuffer());
+            assertEquals(3, store.size());
+            assertEquals(4, store.get(2));
+            assertFalse(store.isSpilled());
+            assertThrows(IndexOutOfBoundsException.class, () -> store.get(3));
+
+            store.clear();
+            assertTrue(store.isEmpty());
+            store.add(9);
+            assertEquals(9, store.get(0));
+        }
+    }
+}
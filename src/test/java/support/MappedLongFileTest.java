@@ -0,0 +1,76 @@
+package support;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedLongFileTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testAppendGrowsAndTrimsOnClose() throws IOException {
+        Path file = dir.resolve("longs.dat");
+        long[] chunk = new long[1 << 20];
+        int chunks = 9; // 72 MB, past the first 64 MB mapping
+        try (MappedLongFile out = MappedLongFile.openReadWrite(file)) {
+            for (int c = 0; c < chunks; c++) {
+                for (int i = 0; i < chunk.length; i++) chunk[i] = (long) c * chunk.length + i - (1L << 40);
+                out.append(chunk, 0, chunk.length);
+            }
+        }
+        assertEquals((long) chunks * chunk.length * Long.BYTES, Files.size(file));
+
+        try (MappedLongFile in = MappedLongFile.openReadOnly(file)) {
+            assertEquals((long) chunks * chunk.length, in.size());
+            long[] back = new long[1000];
+            in.read(5L * chunk.length - 500, back, 0, back.length);
+            for (int i = 0; i < back.length; i++) assertEquals(5L * chunk.length - 500 + i - (1L << 40), back[i]);
+        }
+    }
+
+    @Test
+    void testMatchesDataStreamLayout() throws IOException {
+        Path file = dir.resolve("longs.dat");
+        // A native-order buffer, like the expander's staging views, is swapped to big-endian on the way in
+        LongBuffer src = ByteBuffer.allocateDirect(3 * Long.BYTES).order(ByteOrder.nativeOrder()).asLongBuffer();
+        src.put(new long[]{1L, -2L, 0x0102030405060708L}).flip();
+        try (MappedLongFile out = MappedLongFile.openReadWrite(file)) {
+            out.append(src);
+            assertFalse(src.hasRemaining());
+        }
+
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(file)))) {
+            assertEquals(1L, in.readLong());
+            assertEquals(-2L, in.readLong());
+            assertEquals(0x0102030405060708L, in.readLong());
+        }
+    }
+
+    @Test
+    void testTruncateThenAppendOverwrites() throws IOException {
+        Path file = dir.resolve("longs.dat");
+        try (MappedLongFile out = MappedLongFile.openReadWrite(file)) {
+            out.append(new long[]{1, 2, 3, 4}, 0, 4);
+        }
+        try (MappedLongFile out = MappedLongFile.openReadWrite(file)) {
+            assertEquals(4, out.size());
+            out.truncate(2);
+            out.append(new long[]{9}, 0, 1);
+            assertEquals(9, out.get(2));
+        }
+        try (MappedLongFile in = MappedLongFile.openReadOnly(file)) {
+            assertEquals(3, in.size());
+            assertThrows(IllegalStateException.class, () -> in.append(new long[]{1}, 0, 1));
+        }
+    }
+}